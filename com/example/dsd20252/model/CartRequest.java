@@ -0,0 +1,62 @@
+package com.example.dsd20252.model;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Καλάθι αγορών (typeID 17): πολλές γραμμές (προϊόν, ποσότητα) από ένα κατάστημα σε ένα αίτημα.
+ * Ο primary Worker του καταστήματος το εκτελεί ατομικά, είτε αγοράζονται όλες οι γραμμές είτε καμία,
+ * και απαντά με το αποτέλεσμα κάθε γραμμής (LineResult) με την ίδια σειρά.
+ */
+public class CartRequest implements Serializable {
+    // Αποτέλεσμα γραμμής
+    public static final int OK = 0;
+    public static final int NOT_APPLIED = 1;        // Η γραμμή ήταν εντάξει, αλλά απέτυχε άλλη γραμμή του καλαθιού
+    public static final int UNKNOWN_PRODUCT = 2;
+    public static final int OUT_OF_STOCK = 3;
+    public static final int INVALID_QUANTITY = 4;
+
+    public record Line(String productName, int quantity) implements Serializable {
+    }
+
+    // available: το απόθεμα του προϊόντος μετά την εκτέλεση (0 αν δεν υπάρχει το προϊόν)
+    public record LineResult(String productName, int quantity, int status, int available) implements Serializable {
+    }
+
+    private final String storeName;
+    private final List<Line> lines;
+    // Συμπληρώνεται από τον Worker όταν εκτελεί το καλάθι (null αν δεν βρέθηκε το κατάστημα)· δεν στέλνεται
+    private transient List<LineResult> results;
+
+    public CartRequest(String storeName, List<Line> lines) {
+        this.storeName = storeName;
+        this.lines = lines;
+    }
+
+    public String getStoreName() {
+        return storeName;
+    }
+
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    List<LineResult> getResults() {
+        return results;
+    }
+
+    void setResults(List<LineResult> results) {
+        this.results = results;
+    }
+
+    static String describe(int status) {
+        return switch (status) {
+            case OK -> "OK";
+            case NOT_APPLIED -> "δεν εκτελέστηκε (απέτυχε άλλο προϊόν του καλαθιού)";
+            case UNKNOWN_PRODUCT -> "άγνωστο προϊόν";
+            case OUT_OF_STOCK -> "ανεπαρκές απόθεμα";
+            case INVALID_QUANTITY -> "μη έγκυρη ποσότητα";
+            default -> "άγνωστο αποτέλεσμα " + status;
+        };
+    }
+}
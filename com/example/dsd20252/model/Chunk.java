@@ -2,6 +2,7 @@ package com.example.dsd20252.model;
 
 
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * Η κλάση Chunk χρησιμοποιείται για την αναπαράσταση ενός "πακέτου" δεδομένων
@@ -10,9 +11,17 @@ import java.io.Serializable;
  */
 public class Chunk implements Serializable {
     private final String userID;
-    private static int segmentID;
+    private int segmentID;      // Αναγνωριστικό αιτήματος (correlation id), ξεχωριστό για κάθε Chunk
     private final int typeID;
     private final Object data;
+    // Replication: για εγγραφές, οι Workers που κρατούν το κατάστημα (primary πρώτος)·
+    // για αναγνώσεις, οι Workers που θεωρούνται εκτός λειτουργίας· στις απαντήσεις του Master σε
+    // αναζήτηση/στατιστικά, οι Workers που δεν απάντησαν εγκαίρως (μερικό αποτέλεσμα).
+    // null όταν δεν χρησιμοποιούνται.
+    private List<String> holders;
+    private List<String> down;
+    // Tracing: το trace του αιτήματος και το span στο οποίο κρέμονται τα spans του παραλήπτη (null = χωρίς trace)
+    private TraceContext trace;
 
     public Chunk(String userID, int typeID, Object data){
         this.userID = userID;
@@ -37,6 +46,25 @@ public class Chunk implements Serializable {
         return data;
     }
 
+    public List<String> getHolders() {
+        return holders;
+    }
+    public void setHolders(List<String> holders) {
+        this.holders = holders;
+    }
+    public List<String> getDown() {
+        return down;
+    }
+    public void setDown(List<String> down) {
+        this.down = down;
+    }
+    public TraceContext getTrace() {
+        return trace;
+    }
+    public void setTrace(TraceContext trace) {
+        this.trace = trace;
+    }
+
     /*
     public int getLenght(){
         try {
@@ -0,0 +1,702 @@
+package com.example.dsd20252.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Δυαδική κωδικοποίηση των Chunks που ανταλλάσσονται μεταξύ Client/Master/Worker.
+ * Αντικαθιστά το Java serialization: κάθε μήνυμα είναι ένα frame με μήκος μπροστά και
+ * ρητό είδος περιεχομένου (store, ενημέρωση αποθέματος, φίλτρα αναζήτησης, αγορά κ.λπ.),
+ * χωρίς class descriptors και χωρίς boxed αντικείμενα.
+ *
+ * Μορφή frame: [int μήκος][byte είδος][int typeID][int segmentID][string userID][holders][down][trace][περιεχόμενο]
+ * (τα holders/down υπάρχουν από την έκδοση 2 και μετά, το trace από την έκδοση 3)
+ * Στην αρχή κάθε σύνδεσης κάθε πλευρά στέλνει [int MAGIC][byte έκδοση].
+ */
+final class ChunkCodec {
+    static final int MAGIC = 0x44534432;        // "DSD2"
+    static final int VERSION = 3;               // Η έκδοση πρωτοκόλλου που μιλάμε
+    static final int MIN_VERSION = 1;           // Η παλαιότερη έκδοση που δεχόμαστε
+    static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+    // Είδη περιεχομένου
+    static final byte KIND_NULL = 0;
+    static final byte KIND_TEXT = 1;
+    static final byte KIND_STORE = 2;               // typeID 1, 15 (μετακίνηση), 16 (απάντηση)
+    static final byte KIND_INVENTORY_UPDATE = 3;    // typeID 2
+    static final byte KIND_ADD_PRODUCT = 4;         // typeID 3
+    static final byte KIND_REMOVE_PRODUCT = 5;      // typeID 4
+    static final byte KIND_STATS = 6;               // typeID 5, 6, 7 (απαντήσεις)
+    static final byte KIND_SEARCH_FILTERS = 7;      // typeID 10 (αίτημα)
+    static final byte KIND_STORE_LIST = 8;          // typeID 10 (απάντηση), 14 (μαζική εισαγωγή)
+    static final byte KIND_BUY = 9;                 // typeID 11
+    static final byte KIND_RATING = 10;             // typeID 12
+    static final byte KIND_MIGRATE = 11;            // typeID 13
+    static final byte KIND_MEMBERSHIP = 12;         // typeID 20, 21
+    static final byte KIND_SEARCH_PAGE = 13;        // typeID 10 (απάντηση με limit: σελίδα και cursor)
+    static final byte KIND_RANKED_RESULTS = 14;     // typeID 10 (Worker -> Master: αποτελέσματα με κλειδιά)
+    static final byte KIND_RESULT_LIST = 15;        // typeID 10 (απάντηση χωρίς limit με StoreSummary)
+    static final byte KIND_CART = 16;               // typeID 17 (αίτημα)
+    static final byte KIND_CART_RESULT = 17;        // typeID 17 (απάντηση: αποτέλεσμα ανά γραμμή)
+    static final byte KIND_PRODUCT_STATE = 18;      // typeID 19 (primary -> αντίγραφα: απόθεμα μετά από αγορά)
+
+    // Μορφή ενός αποτελέσματος αναζήτησης
+    private static final byte RESULT_STORE = 0;
+    private static final byte RESULT_SUMMARY = 1;
+
+    // Προαιρετικά πεδία των φίλτρων αναζήτησης
+    private static final int FILTER_FOOD_CATEGORY = 1;
+    private static final int FILTER_STARS = 1 << 1;
+    private static final int FILTER_PRICE_CATEGORY = 1 << 2;
+    private static final int FILTER_LIMIT = 1 << 3;
+    private static final int FILTER_SORT_BY = 1 << 4;
+    private static final int FILTER_CURSOR = 1 << 5;
+    private static final int FILTER_ALLOW_PARTIAL = 1 << 6;
+    private static final int FILTER_FIELDS = 1 << 7;
+    private static final int FILTER_INCLUDE_PRODUCTS = 1 << 8;
+
+    private ChunkCodec() {
+    }
+
+    static int negotiate(int peerVersion) throws IOException {
+        return negotiate(peerVersion, true);
+    }
+
+    // Η έκδοση με την οποία διαβάζονται τα frames του απέναντι. Σε αμφίδρομη σύνδεση ο απέναντι διαβάζει και
+    // τη δική μας κεφαλίδα και γράφει στη μικρότερη από τις δύο εκδόσεις· σε μονόδρομη (replies = false) δεν τη
+    // βλέπει ποτέ και γράφει στη δική του, οπότε μια νεότερη έκδοση απορρίπτεται αντί να διαβαστεί λάθος.
+    static int negotiate(int peerVersion, boolean replies) throws IOException {
+        if (peerVersion < MIN_VERSION || (!replies && peerVersion > VERSION)) {
+            throw new IOException("Μη υποστηριζόμενη έκδοση πρωτοκόλλου: " + peerVersion);
+        }
+        return Math.min(VERSION, peerVersion);
+    }
+
+    // ---------------------------------------------------------------- κωδικοποίηση
+
+    // Η κεφαλίδα που στέλνει κάθε πλευρά στην αρχή της σύνδεσης, για χρήση από NIO
+    static ByteBuffer encodeHeader() {
+        ByteBuffer header = ByteBuffer.allocate(5);
+        header.putInt(MAGIC).put((byte) VERSION).flip();
+        return header;
+    }
+
+    // Ολόκληρο frame (μαζί με το μήκος) σε ByteBuffer έτοιμο για εγγραφή σε SocketChannel
+    static ByteBuffer encodeFrame(Chunk chunk, int version) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        writeChunk(out, chunk, version);
+        ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+        frame.putInt(0, frame.capacity() - 4);
+        return frame;
+    }
+
+    static void writeChunk(DataOutputStream out, Chunk chunk, int version) throws IOException {
+        byte kind = kindOf(chunk);
+        out.writeByte(kind);
+        out.writeInt(chunk.getTypeID());
+        out.writeInt(chunk.getSegmentID());
+        writeString(out, chunk.getUserID());
+        if (version >= 2) {
+            writeStringList(out, chunk.getHolders());
+            writeStringList(out, chunk.getDown());
+        }
+        if (version >= 3) {
+            writeTrace(out, chunk.getTrace());
+        }
+
+        Object data = chunk.getData();
+        switch (kind) {
+            case KIND_NULL -> {
+            }
+            case KIND_TEXT -> writeString(out, (String) data);
+            case KIND_STORE -> writeStore(out, (Store) data);
+            case KIND_INVENTORY_UPDATE -> {
+                Map<String, Object> map = (Map<String, Object>) data;
+                writeString(out, (String) map.get("storeName"));
+                writeString(out, (String) map.get("productName"));
+                out.writeInt((int) map.get("newAmount"));
+            }
+            case KIND_ADD_PRODUCT -> {
+                Map<String, Object> map = (Map<String, Object>) data;
+                writeString(out, (String) map.get("storeName"));
+                writeProduct(out, (Product) map.get("product"));
+            }
+            case KIND_REMOVE_PRODUCT -> {
+                Map<String, Object> map = (Map<String, Object>) data;
+                writeString(out, (String) map.get("storeName"));
+                writeString(out, (String) map.get("productName"));
+            }
+            case KIND_STATS -> {
+                Map<String, Integer> map = (Map<String, Integer>) data;
+                writeVarInt(out, map.size());
+                for (Map.Entry<String, Integer> e : map.entrySet()) {
+                    writeString(out, e.getKey());
+                    out.writeInt(e.getValue());
+                }
+            }
+            case KIND_SEARCH_FILTERS -> writeSearchFilters(out, (Map<String, Object>) data);
+            case KIND_STORE_LIST -> {
+                List<Store> stores = (List<Store>) data;
+                writeVarInt(out, stores.size());
+                for (Store store : stores) {
+                    writeStore(out, store);
+                }
+            }
+            case KIND_BUY -> {
+                BuyRequest req = (BuyRequest) data;
+                writeString(out, req.getStoreName());
+                writeString(out, req.getProductName());
+                out.writeInt(req.getQuantity());
+            }
+            case KIND_RATING -> {
+                Map<String, Object> map = (Map<String, Object>) data;
+                writeString(out, (String) map.get("storeName"));
+                out.writeInt((int) map.get("rating"));
+            }
+            case KIND_MIGRATE -> {
+                Map<String, Object> map = (Map<String, Object>) data;
+                writeString(out, (String) map.get("storeName"));
+                writeStringList(out, (List<String>) map.get("targets"));
+                writeStringList(out, (List<String>) map.get("holders"));
+                out.writeBoolean((boolean) map.get("keep"));
+            }
+            case KIND_SEARCH_PAGE -> {
+                Map<String, Object> map = (Map<String, Object>) data;
+                writeResults(out, (List<Object>) map.get("stores"));
+                writeString(out, (String) map.get("nextCursor"));
+            }
+            case KIND_RANKED_RESULTS -> {
+                List<SearchOrder.Ranked> results = (List<SearchOrder.Ranked>) data;
+                writeVarInt(out, results.size());
+                for (SearchOrder.Ranked r : results) {
+                    out.writeDouble(r.key().score());
+                    out.writeDouble(r.key().distance());
+                    writeResult(out, r.result());
+                }
+            }
+            case KIND_RESULT_LIST -> writeResults(out, (List<Object>) data);
+            case KIND_CART -> {
+                CartRequest cart = (CartRequest) data;
+                writeString(out, cart.getStoreName());
+                writeVarInt(out, cart.getLines().size());
+                for (CartRequest.Line line : cart.getLines()) {
+                    writeString(out, line.productName());
+                    out.writeInt(line.quantity());
+                }
+            }
+            case KIND_CART_RESULT -> {
+                List<CartRequest.LineResult> results = (List<CartRequest.LineResult>) data;
+                writeVarInt(out, results.size());
+                for (CartRequest.LineResult r : results) {
+                    writeString(out, r.productName());
+                    out.writeInt(r.quantity());
+                    out.writeByte(r.status());
+                    out.writeInt(r.available());
+                }
+            }
+            case KIND_PRODUCT_STATE -> {
+                Map<String, Object> map = (Map<String, Object>) data;
+                writeString(out, (String) map.get("storeName"));
+                List<ProductState> products = (List<ProductState>) map.get("products");
+                writeVarInt(out, products.size());
+                for (ProductState p : products) {
+                    writeString(out, p.productName());
+                    out.writeInt(p.available());
+                    out.writeInt(p.sold());
+                }
+            }
+            case KIND_MEMBERSHIP -> {
+                Map<String, Object> map = (Map<String, Object>) data;
+                writeString(out, (String) map.get("host"));
+                out.writeInt((int) map.get("port"));
+                out.writeInt((int) map.getOrDefault("weight", 1));
+            }
+            default -> throw new IOException("Άγνωστο είδος μηνύματος: " + kind);
+        }
+    }
+
+    // Επιλέγει το είδος περιεχομένου με βάση το typeID και τον τύπο των δεδομένων
+    private static byte kindOf(Chunk chunk) throws IOException {
+        Object data = chunk.getData();
+        if (data == null) {
+            return KIND_NULL;
+        }
+        if (data instanceof String) {
+            return KIND_TEXT;
+        }
+        return switch (chunk.getTypeID()) {
+            case 1, 15, 16 -> KIND_STORE;
+            case 2 -> KIND_INVENTORY_UPDATE;
+            case 3 -> KIND_ADD_PRODUCT;
+            case 4 -> KIND_REMOVE_PRODUCT;
+            case 5, 6, 7 -> KIND_STATS;
+            case 10 -> searchKind(data);
+            case 11 -> KIND_BUY;
+            case 12 -> KIND_RATING;
+            case 13 -> KIND_MIGRATE;
+            case 14 -> data instanceof List ? KIND_STORE_LIST : KIND_STATS;   // αίτημα / απάντηση με πλήθη
+            case 17 -> data instanceof CartRequest ? KIND_CART : KIND_CART_RESULT;
+            case 19 -> KIND_PRODUCT_STATE;
+            case 20, 21 -> KIND_MEMBERSHIP;
+            default -> throw new IOException("Δεν υπάρχει κωδικοποίηση για typeID " + chunk.getTypeID()
+                    + " με δεδομένα " + data.getClass().getSimpleName());
+        };
+    }
+
+    private static byte searchKind(Object data) {
+        if (data instanceof Map<?, ?> map) {
+            return map.containsKey("stores") ? KIND_SEARCH_PAGE : KIND_SEARCH_FILTERS;
+        }
+        List<?> list = (List<?>) data;
+        if (list.isEmpty()) {
+            return KIND_RESULT_LIST;
+        }
+        Object first = list.get(0);
+        if (first instanceof SearchOrder.Ranked) {
+            return KIND_RANKED_RESULTS;
+        }
+        // Λίστα με πλήρη Store (includeProducts) στέλνεται όπως πριν τις προβολές
+        return first instanceof Store ? KIND_STORE_LIST : KIND_RESULT_LIST;
+    }
+
+    private static void writeResults(DataOutputStream out, List<Object> results) throws IOException {
+        writeVarInt(out, results.size());
+        for (Object result : results) {
+            writeResult(out, result);
+        }
+    }
+
+    private static void writeResult(DataOutputStream out, Object result) throws IOException {
+        if (result instanceof Store store) {
+            out.writeByte(RESULT_STORE);
+            writeStore(out, store);
+            return;
+        }
+        StoreSummary s = (StoreSummary) result;
+        out.writeByte(RESULT_SUMMARY);
+        writeVarInt(out, s.fields());
+        writeString(out, s.storeName());
+        if (s.has(StoreSummary.FIELD_LOCATION)) {
+            out.writeDouble(s.latitude());
+            out.writeDouble(s.longitude());
+        }
+        if (s.has(StoreSummary.FIELD_FOOD_CATEGORY)) writeString(out, s.foodCategory());
+        if (s.has(StoreSummary.FIELD_STARS)) {
+            out.writeInt(s.stars());
+            out.writeInt(s.noOfVotes());
+        }
+        if (s.has(StoreSummary.FIELD_PRICE_CATEGORY)) writeString(out, s.priceCategory());
+        if (s.has(StoreSummary.FIELD_LOGO)) writeString(out, s.storeLogo());
+    }
+
+    private static void writeSearchFilters(DataOutputStream out, Map<String, Object> filters) throws IOException {
+        String foodCategory = (String) filters.get("foodCategory");
+        Integer stars = (Integer) filters.get("stars");
+        String priceCategory = (String) filters.get("priceCategory");
+        Integer limit = (Integer) filters.get("limit");
+        String sortBy = (String) filters.get("sortBy");
+        String cursor = (String) filters.get("cursor");
+        Boolean allowPartial = (Boolean) filters.get("allowPartial");
+        Integer fields = (Integer) filters.get("fields");
+        Boolean includeProducts = (Boolean) filters.get("includeProducts");
+
+        int present = 0;
+        if (foodCategory != null) present |= FILTER_FOOD_CATEGORY;
+        if (stars != null) present |= FILTER_STARS;
+        if (priceCategory != null) present |= FILTER_PRICE_CATEGORY;
+        if (limit != null) present |= FILTER_LIMIT;
+        if (sortBy != null) present |= FILTER_SORT_BY;
+        if (cursor != null) present |= FILTER_CURSOR;
+        if (allowPartial != null) present |= FILTER_ALLOW_PARTIAL;
+        if (fields != null) present |= FILTER_FIELDS;
+        if (includeProducts != null) present |= FILTER_INCLUDE_PRODUCTS;
+
+        out.writeDouble((double) filters.get("latitude"));
+        out.writeDouble((double) filters.get("longitude"));
+        writeVarInt(out, present);
+        if (foodCategory != null) writeString(out, foodCategory);
+        if (stars != null) out.writeInt(stars);
+        if (priceCategory != null) writeString(out, priceCategory);
+        if (limit != null) writeVarInt(out, limit);
+        if (sortBy != null) writeString(out, sortBy);
+        if (cursor != null) writeString(out, cursor);
+        if (allowPartial != null) out.writeBoolean(allowPartial);
+        if (fields != null) writeVarInt(out, fields);
+        if (includeProducts != null) out.writeBoolean(includeProducts);
+    }
+
+    static void writeStore(DataOutputStream out, Store store) throws IOException {
+        writeString(out, store.getStoreName());
+        out.writeDouble(store.getLatitude());
+        out.writeDouble(store.getLongitude());
+        writeString(out, store.getFoodCategory());
+        out.writeInt(store.getStars());
+        out.writeInt(store.getNoOfVotes());
+        writeString(out, store.getPriceCategory());
+        writeString(out, store.getStoreLogo());
+
+        List<Product> products = store.getProducts();
+        if (products == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        // Αντίγραφο ώστε μια ταυτόχρονη προσθήκη/αφαίρεση προϊόντος να μη χαλάσει το μέτρημα
+        Product[] snapshot = products.toArray(new Product[0]);
+        writeVarInt(out, snapshot.length);
+        for (Product p : snapshot) {
+            writeProduct(out, p);
+        }
+    }
+
+    static void writeProduct(DataOutputStream out, Product p) throws IOException {
+        writeString(out, p.getProductName());
+        writeString(out, p.getProductType());
+        out.writeInt(p.getAvailableAmount());
+        out.writeDouble(p.getPrice());
+        out.writeInt(p.getSoldAmount());
+        out.writeInt(p.getInitialAmount());
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1); // 0 σημαίνει null
+        out.write(bytes);
+    }
+
+    // Λίστα strings· το 0 σημαίνει null
+    static void writeStringList(DataOutputStream out, List<String> list) throws IOException {
+        if (list == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, list.size() + 1);
+        for (String s : list) {
+            writeString(out, s);
+        }
+    }
+
+    // Trace context: [byte 0 = κανένα | 1 = χωρίς δειγματοληψία | 2 = με δειγματοληψία][long traceId][long spanId]
+    static void writeTrace(DataOutputStream out, TraceContext trace) throws IOException {
+        if (trace == null) {
+            out.writeByte(0);
+            return;
+        }
+        out.writeByte(trace.sampled() ? 2 : 1);
+        out.writeLong(trace.traceId());
+        out.writeLong(trace.spanId());
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    // ---------------------------------------------------------------- αποκωδικοποίηση
+
+    // Διαβάζει το σώμα ενός frame (χωρίς το μήκος) από τον buffer
+    static Chunk readChunk(ByteBuffer in, int version) throws IOException {
+        try {
+            byte kind = in.get();
+            int typeID = in.getInt();
+            int segmentID = in.getInt();
+            String userID = readString(in);
+            List<String> holders = version >= 2 ? readStringList(in) : null;
+            List<String> down = version >= 2 ? readStringList(in) : null;
+            TraceContext trace = version >= 3 ? readTrace(in) : null;
+
+            Object data = switch (kind) {
+                case KIND_NULL -> null;
+                case KIND_TEXT -> readString(in);
+                case KIND_STORE -> readStore(in);
+                case KIND_INVENTORY_UPDATE -> {
+                    Map<String, Object> map = new HashMap<>();
+                    map.put("storeName", readString(in));
+                    map.put("productName", readString(in));
+                    map.put("newAmount", in.getInt());
+                    yield map;
+                }
+                case KIND_ADD_PRODUCT -> {
+                    Map<String, Object> map = new HashMap<>();
+                    map.put("storeName", readString(in));
+                    map.put("product", readProduct(in));
+                    yield map;
+                }
+                case KIND_REMOVE_PRODUCT -> {
+                    Map<String, Object> map = new HashMap<>();
+                    map.put("storeName", readString(in));
+                    map.put("productName", readString(in));
+                    yield map;
+                }
+                case KIND_STATS -> {
+                    int size = readSize(in);
+                    Map<String, Integer> map = new HashMap<>();
+                    for (int i = 0; i < size; i++) {
+                        map.put(readString(in), in.getInt());
+                    }
+                    yield map;
+                }
+                case KIND_SEARCH_FILTERS -> readSearchFilters(in);
+                case KIND_STORE_LIST -> {
+                    int size = readSize(in);
+                    List<Store> stores = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        stores.add(readStore(in));
+                    }
+                    yield stores;
+                }
+                case KIND_BUY -> new BuyRequest(readString(in), readString(in), in.getInt());
+                case KIND_RATING -> {
+                    Map<String, Object> map = new HashMap<>();
+                    map.put("storeName", readString(in));
+                    map.put("rating", in.getInt());
+                    yield map;
+                }
+                case KIND_MIGRATE -> {
+                    Map<String, Object> map = new HashMap<>();
+                    map.put("storeName", readString(in));
+                    map.put("targets", readStringList(in));
+                    map.put("holders", readStringList(in));
+                    map.put("keep", in.get() != 0);
+                    yield map;
+                }
+                case KIND_SEARCH_PAGE -> {
+                    List<Object> stores = readResults(in);
+                    Map<String, Object> map = new HashMap<>();
+                    map.put("stores", stores);
+                    map.put("nextCursor", readString(in));
+                    yield map;
+                }
+                case KIND_RANKED_RESULTS -> {
+                    int size = readSize(in);
+                    List<SearchOrder.Ranked> results = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        double score = in.getDouble();
+                        double distance = in.getDouble();
+                        Object result = readResult(in);
+                        String name = Worker.nameKey(SearchOrder.nameOf(result));
+                        results.add(new SearchOrder.Ranked(result, new SearchOrder.Key(score, distance, name)));
+                    }
+                    yield results;
+                }
+                case KIND_RESULT_LIST -> readResults(in);
+                case KIND_CART -> {
+                    String storeName = readString(in);
+                    int size = readSize(in);
+                    List<CartRequest.Line> lines = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        lines.add(new CartRequest.Line(readString(in), in.getInt()));
+                    }
+                    yield new CartRequest(storeName, lines);
+                }
+                case KIND_CART_RESULT -> {
+                    int size = readSize(in);
+                    List<CartRequest.LineResult> results = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        results.add(new CartRequest.LineResult(readString(in), in.getInt(), in.get(), in.getInt()));
+                    }
+                    yield results;
+                }
+                case KIND_PRODUCT_STATE -> {
+                    Map<String, Object> map = new HashMap<>();
+                    map.put("storeName", readString(in));
+                    int size = readSize(in);
+                    List<ProductState> products = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        products.add(new ProductState(readString(in), in.getInt(), in.getInt()));
+                    }
+                    map.put("products", products);
+                    yield map;
+                }
+                case KIND_MEMBERSHIP -> {
+                    Map<String, Object> map = new HashMap<>();
+                    map.put("host", readString(in));
+                    map.put("port", in.getInt());
+                    map.put("weight", in.getInt());
+                    yield map;
+                }
+                default -> throw new IOException("Άγνωστο είδος μηνύματος: " + kind);
+            };
+
+            Chunk chunk = new Chunk(userID, typeID, data);
+            chunk.setSegmentID(segmentID);
+            chunk.setHolders(holders);
+            chunk.setDown(down);
+            chunk.setTrace(trace);
+            return chunk;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Κομμένο frame", e);
+        }
+    }
+
+    private static Map<String, Object> readSearchFilters(ByteBuffer in) throws IOException {
+        Map<String, Object> filters = new HashMap<>();
+        filters.put("latitude", in.getDouble());
+        filters.put("longitude", in.getDouble());
+        int present = readVarInt(in);
+        if ((present & FILTER_FOOD_CATEGORY) != 0) filters.put("foodCategory", readString(in));
+        if ((present & FILTER_STARS) != 0) filters.put("stars", in.getInt());
+        if ((present & FILTER_PRICE_CATEGORY) != 0) filters.put("priceCategory", readString(in));
+        if ((present & FILTER_LIMIT) != 0) filters.put("limit", readVarInt(in));
+        if ((present & FILTER_SORT_BY) != 0) filters.put("sortBy", readString(in));
+        if ((present & FILTER_CURSOR) != 0) filters.put("cursor", readString(in));
+        if ((present & FILTER_ALLOW_PARTIAL) != 0) filters.put("allowPartial", in.get() != 0);
+        if ((present & FILTER_FIELDS) != 0) filters.put("fields", readVarInt(in));
+        if ((present & FILTER_INCLUDE_PRODUCTS) != 0) filters.put("includeProducts", in.get() != 0);
+        return filters;
+    }
+
+    private static List<Object> readResults(ByteBuffer in) throws IOException {
+        int size = readSize(in);
+        List<Object> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            results.add(readResult(in));
+        }
+        return results;
+    }
+
+    private static Object readResult(ByteBuffer in) throws IOException {
+        byte form = in.get();
+        if (form == RESULT_STORE) {
+            return readStore(in);
+        }
+        if (form != RESULT_SUMMARY) {
+            throw new IOException("Άγνωστη μορφή αποτελέσματος: " + form);
+        }
+        int fields = readVarInt(in);
+        String name = readString(in);
+        double lat = 0, lon = 0;
+        String foodCategory = null, priceCategory = null, logo = null;
+        int stars = 0, votes = 0;
+        if ((fields & StoreSummary.FIELD_LOCATION) != 0) {
+            lat = in.getDouble();
+            lon = in.getDouble();
+        }
+        if ((fields & StoreSummary.FIELD_FOOD_CATEGORY) != 0) foodCategory = readString(in);
+        if ((fields & StoreSummary.FIELD_STARS) != 0) {
+            stars = in.getInt();
+            votes = in.getInt();
+        }
+        if ((fields & StoreSummary.FIELD_PRICE_CATEGORY) != 0) priceCategory = readString(in);
+        if ((fields & StoreSummary.FIELD_LOGO) != 0) logo = readString(in);
+        return new StoreSummary(name, lat, lon, foodCategory, stars, votes, priceCategory, logo, fields);
+    }
+
+    static Store readStore(ByteBuffer in) throws IOException {
+        Store store = new Store();
+        store.setStoreName(readString(in));
+        store.setLatitude(in.getDouble());
+        store.setLongitude(in.getDouble());
+        store.setFoodCategory(readString(in));
+        store.setStars(in.getInt());
+        store.setNoOfVotes(in.getInt());
+        store.setPriceCategory(readString(in));
+        store.setStoreLogo(readString(in));
+
+        int count = readSize(in);
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(readProduct(in));
+        }
+        store.setProducts(products);
+        return store;
+    }
+
+    static Product readProduct(ByteBuffer in) throws IOException {
+        Product p = new Product();
+        p.setProductName(readString(in));
+        p.setProductType(readString(in));
+        p.setAvailableAmount(in.getInt());
+        p.setPrice(in.getDouble());
+        p.setSoldAmount(in.getInt());
+        p.setInitialAmount(in.getInt());
+        return p;
+    }
+
+    static String readString(ByteBuffer in) throws IOException {
+        int encoded = readVarInt(in);
+        if (encoded == 0) {
+            return null;
+        }
+        int length = encoded - 1;
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("Κομμένο string");
+        }
+        String s;
+        if (in.hasArray()) {
+            s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+
+    static TraceContext readTrace(ByteBuffer in) throws IOException {
+        byte flags = in.get();
+        if (flags == 0) {
+            return null;
+        }
+        if (flags != 1 && flags != 2) {
+            throw new IOException("Άγνωστο trace context: " + flags);
+        }
+        return new TraceContext(in.getLong(), in.getLong(), flags == 2);
+    }
+
+    static List<String> readStringList(ByteBuffer in) throws IOException {
+        int encoded = readVarInt(in);
+        if (encoded == 0) {
+            return null;
+        }
+        int size = checkSize(encoded - 1, in);
+        List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(readString(in));
+        }
+        return list;
+    }
+
+    // Πλήθος στοιχείων λίστας/map από το frame. Κάθε στοιχείο πιάνει τουλάχιστον ένα byte, οπότε πλήθος
+    // αρνητικό ή μεγαλύτερο από όσα bytes απομένουν σημαίνει αλλοιωμένο frame: απορρίπτεται πριν δεσμευτεί
+    // μνήμη για αυτό.
+    static int readSize(ByteBuffer in) throws IOException {
+        return checkSize(readVarInt(in), in);
+    }
+
+    private static int checkSize(int size, ByteBuffer in) throws IOException {
+        if (size < 0 || size > in.remaining()) {
+            throw new IOException("Μη έγκυρο πλήθος στοιχείων: " + size + " (απομένουν " + in.remaining() + " bytes)");
+        }
+        return size;
+    }
+
+    static int readVarInt(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Μη έγκυρος varint");
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.dsd20252.model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Διαβάζει Chunks που γράφτηκαν από ChunkOutputStream.
+ * Αντίστοιχο του ObjectInputStream: ο constructor περιμένει την κεφαλίδα του απέναντι κόμβου
+ * και ελέγχει ότι μιλάμε συμβατή έκδοση πρωτοκόλλου.
+ */
+public class ChunkInputStream implements Closeable {
+    private final DataInputStream in;
+    private final int peerVersion;
+    private final int version;
+    private byte[] buffer = new byte[1024];
+
+    public ChunkInputStream(InputStream stream) throws IOException {
+        this(stream, true);
+    }
+
+    // replies = false για συνδέσεις στις οποίες δεν απαντάμε (βλ. ChunkCodec.negotiate)
+    public ChunkInputStream(InputStream stream, boolean replies) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(stream));
+        int magic = in.readInt();
+        if (magic != ChunkCodec.MAGIC) {
+            throw new StreamCorruptedException("Άγνωστο πρωτόκολλο (magic=" + Integer.toHexString(magic) + ")");
+        }
+        peerVersion = in.readUnsignedByte();
+        version = ChunkCodec.negotiate(peerVersion, replies);
+    }
+
+    public int getPeerVersion() {
+        return peerVersion;
+    }
+
+    // Επιστρέφει το επόμενο Chunk. Πετάει EOFException όταν ο απέναντι κλείσει τη σύνδεση.
+    public Chunk readChunk() throws IOException {
+        int length = in.readInt();
+        if (length <= 0 || length > ChunkCodec.MAX_FRAME_SIZE) {
+            throw new StreamCorruptedException("Μη έγκυρο μήκος frame: " + length);
+        }
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        in.readFully(buffer, 0, length);
+        return ChunkCodec.readChunk(ByteBuffer.wrap(buffer, 0, length), version);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
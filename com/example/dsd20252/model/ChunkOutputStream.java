@@ -0,0 +1,52 @@
+package com.example.dsd20252.model;
+
+import java.io.*;
+
+/**
+ * Γράφει Chunks σε ένα stream με τη δυαδική μορφή του ChunkCodec.
+ * Αντίστοιχο του ObjectOutputStream: ο constructor στέλνει αμέσως την κεφαλίδα (MAGIC + έκδοση).
+ * Ο buffer κωδικοποίησης ξαναχρησιμοποιείται από frame σε frame.
+ */
+public class ChunkOutputStream implements Closeable, Flushable {
+    private final DataOutputStream out;
+    private final FrameBuffer frame = new FrameBuffer();
+    private final DataOutputStream frameData = new DataOutputStream(frame);
+    private int version = ChunkCodec.VERSION;
+
+    public ChunkOutputStream(OutputStream stream) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(ChunkCodec.MAGIC);
+        out.writeByte(ChunkCodec.VERSION);
+        out.flush();
+    }
+
+    // Κατεβαίνει στην έκδοση του απέναντι κόμβου αν αυτή είναι παλαιότερη
+    public void negotiate(int peerVersion) throws IOException {
+        version = ChunkCodec.negotiate(peerVersion);
+    }
+
+    public synchronized void writeChunk(Chunk chunk) throws IOException {
+        frame.reset();
+        ChunkCodec.writeChunk(frameData, chunk, version);
+        out.writeInt(frame.size());
+        frame.writeTo(out);
+        out.flush();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    // ByteArrayOutputStream που κρατά τη χωρητικότητά του μετά το reset()
+    private static class FrameBuffer extends ByteArrayOutputStream {
+        FrameBuffer() {
+            super(1024);
+        }
+    }
+}
@@ -1,17 +1,20 @@
 package com.example.dsd20252.model;
 
 import java.io.*;
-import java.net.Socket;
 import java.util.*;
 
 /**
  * Η κλάση DummyUser προσομοιώνει τη συμπεριφορά ενός πελάτη που συνδέεται με τον Master,
  * εκτελεί αναζητήσεις με βάση φίλτρα, αγοράζει προϊόντα και βαθμολογεί καταστήματα μέσω TCP sockets.
+ * Όλα τα αιτήματα της συνεδρίας στέλνονται από μία σύνδεση (MasterClient).
  */
 public class DummyUser {
 
+    private static final int PAGE_SIZE = 10;    // Καταστήματα ανά σελίδα αναζήτησης
+
     private static String masterHost;
     private static int masterPort;
+    private static MasterClient master;
 
     public static void main(String[] args) {
         loadConfig();
@@ -20,9 +23,10 @@ public class DummyUser {
         while (true) {
             System.out.println("\n=== Dummy User Menu ===");
             System.out.println("1. Αναζήτηση καταστημάτων");
-            System.out.println("2. Αγορά Προϊόντος");
+            System.out.println("2. Αγορά Προϊόντων");
             System.out.println("3. Βαθμολόγηση καταστήματος");
             System.out.println("4. Έξοδος");
+            System.out.println("5. Λεπτομέρειες καταστήματος");
             System.out.print("Επιλογή: ");
             String choice = scanner.nextLine();
 
@@ -31,6 +35,7 @@ public class DummyUser {
                 case "2" -> buy(scanner);
                 case "3" -> handleRating(scanner);
                 case "4" -> System.exit(0);
+                case "5" -> storeDetails(scanner);
                 default -> System.out.println("Μη έγκυρη επιλογή.");
             }
         }
@@ -47,86 +52,166 @@ public class DummyUser {
         }
     }
 
+    // Στέλνει ένα αίτημα στον Master και περιμένει την απάντηση· η σύνδεση ανοίγει ξανά αν έχει κοπεί
+    private static Chunk ask(Chunk request) throws IOException {
+        if (master == null || !master.isOpen()) {
+            master = MasterClient.connect(masterHost, masterPort);
+        }
+        return master.call(request);
+    }
+
     /**
      * Αποστέλλει φίλτρα στο Master και λαμβάνει λίστα καταστημάτων που τα ικανοποιούν.
+     * Τα αποτελέσματα έρχονται ταξινομημένα σε σελίδες των PAGE_SIZE· για την επόμενη σελίδα
+     * στέλνεται ξανά το ίδιο αίτημα με το cursor που επέστρεψε ο Master.
      */
     private static void search(Scanner scanner) {
-        try (Socket socket = new Socket(masterHost, masterPort);
-             ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-             ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) {
-
-            // Διαβάζουμε τα φίλτρα από τον χρήστη
-            Map<String, Object> filters = new HashMap<>();
-
-            System.out.print("Latitude: ");
-            filters.put("latitude", Double.parseDouble(scanner.nextLine()));
+        // Διαβάζουμε τα φίλτρα από τον χρήστη
+        Map<String, Object> filters = new HashMap<>();
 
-            System.out.print("Longitude: ");
-            filters.put("longitude", Double.parseDouble(scanner.nextLine()));
+        System.out.print("Latitude: ");
+        filters.put("latitude", Double.parseDouble(scanner.nextLine()));
 
-            System.out.print("Food Category (π.χ. pizzeria): ");
-            String food = scanner.nextLine();
-            if (!food.isEmpty()) filters.put("foodCategory", food);
+        System.out.print("Longitude: ");
+        filters.put("longitude", Double.parseDouble(scanner.nextLine()));
 
-            System.out.print("Ελάχιστα αστέρια (1-5): ");
-            String stars = scanner.nextLine();
-            if (!stars.isEmpty()) filters.put("stars", Integer.parseInt(stars));
+        System.out.print("Food Category (π.χ. pizzeria): ");
+        String food = scanner.nextLine();
+        if (!food.isEmpty()) filters.put("foodCategory", food);
 
-            System.out.print("Price Category ($/$$/$$$): ");
-            String price = scanner.nextLine();
-            if (!price.isEmpty()) filters.put("priceCategory", price);
+        System.out.print("Ελάχιστα αστέρια (1-5): ");
+        String stars = scanner.nextLine();
+        if (!stars.isEmpty()) filters.put("stars", Integer.parseInt(stars));
 
-            // Δημιουργία και αποστολή Chunk αναζήτησης
-            Chunk searchRequest = new Chunk("dummyuser", 10, filters);
-
-            out.writeObject(searchRequest);
-            out.flush();
-            System.out.println("Search request sent to Master.");
+        System.out.print("Price Category ($/$$/$$$): ");
+        String price = scanner.nextLine();
+        if (!price.isEmpty()) filters.put("priceCategory", price);
 
-            // Λήψη και εμφάνιση αποτελεσμάτων
-            Chunk response = (Chunk) in.readObject();
-            List<Store> foundStores = (List<Store>) response.getData();
+        System.out.print("Ταξινόμηση (distance/stars/price) [distance]: ");
+        String sortBy = scanner.nextLine();
+        if (!sortBy.isEmpty()) filters.put("sortBy", sortBy);
+        filters.put("limit", PAGE_SIZE);
 
-            if (foundStores.isEmpty()) {
+        int shown = 0;
+        while (true) {
+            Map<String, Object> page = searchPage(filters);
+            if (page == null) {
+                return;
+            }
+            // Σύντομη μορφή (StoreSummary)· τα προϊόντα ενός καταστήματος με την επιλογή 5
+            List<StoreSummary> foundStores = (List<StoreSummary>) page.get("stores");
+            if (shown == 0 && foundStores.isEmpty()) {
                 System.out.println("Δεν βρέθηκαν καταστήματα με αυτά τα φίλτρα.");
-            } else {
+                return;
+            }
+            if (shown == 0) {
                 System.out.println("\nΒρέθηκαν καταστήματα:");
-                for (Store s : foundStores) {
-                    System.out.println(s.getStoreName() + " | " + s.getFoodCategory() + " | " + s.getStars() + "| " + s.getPriceCategory());
-                }
             }
+            double lat = (double) filters.get("latitude"), lon = (double) filters.get("longitude");
+            for (StoreSummary s : foundStores) {
+                double km = SpatialIndex.distance(lat, lon, s.latitude(), s.longitude());
+                System.out.printf("%d. %s | %s | %d| %s | %.2f km%n", ++shown, s.storeName(),
+                        s.foodCategory(), s.stars(), s.priceCategory(), km);
+            }
+
+            String cursor = (String) page.get("nextCursor");
+            if (cursor == null) {
+                return;
+            }
+            System.out.print("Επόμενη σελίδα; (ν/ο): ");
+            String answer = scanner.nextLine().trim();
+            if (!answer.equalsIgnoreCase("ν") && !answer.equalsIgnoreCase("y")) {
+                return;
+            }
+            filters.put("cursor", cursor);
+        }
+    }
+
+    // Μία σελίδα αποτελεσμάτων: {stores, nextCursor}· null αν ο Master απάντησε με σφάλμα
+    private static Map<String, Object> searchPage(Map<String, Object> filters) {
+        try {
+            // Δημιουργία και αποστολή Chunk αναζήτησης, λήψη αποτελεσμάτων
+            Chunk searchRequest = new Chunk("dummyuser", 10, filters);
+            System.out.println("Search request sent to Master.");
+            Chunk response = ask(searchRequest);
+            if (response.getDown() != null && !response.getDown().isEmpty()) {
+                System.out.println("⚠ Μερικά αποτελέσματα: δεν απάντησαν εγκαίρως οι Workers " + response.getDown());
+            }
+            if (!(response.getData() instanceof Map)) {
+                System.out.println("Απάντηση: " + response.getData());
+                return null;
+            }
+            return (Map<String, Object>) response.getData();
 
         } catch (Exception e) {
             e.printStackTrace();
+            return null;
         }
     }
-    // Αποστέλλει αίτημα αγοράς στο Master.
-    private static void buy(Scanner in) {
+    // Ζητά από τον Master όλες τις πληροφορίες ενός καταστήματος, μαζί με τα προϊόντα του (typeID 16)
+    private static void storeDetails(Scanner scanner) {
+        System.out.print("Όνομα καταστήματος: ");
+        String storeName = scanner.nextLine();
 
+        try {
+            Chunk response = ask(new Chunk("dummyuser", 16, storeName));
+            if (!(response.getData() instanceof Store store)) {
+                System.out.println("Απάντηση: " + response.getData());
+                return;
+            }
+            System.out.println("\n" + store.getStoreName() + " | " + store.getFoodCategory() + " | "
+                    + store.getStars() + " αστέρια (" + store.getNoOfVotes() + " ψήφοι) | " + store.getPriceCategory());
+            System.out.println("Θέση: " + store.getLatitude() + ", " + store.getLongitude() + " | Logo: " + store.getStoreLogo());
+            for (Product p : store.getProducts()) {
+                System.out.printf("  - %s (%s): %.2f€, διαθέσιμα %d%n", p.getProductName(), p.getProductType(),
+                        p.getPrice(), p.getAvailableAmount());
+            }
 
-        try (Socket socket = new Socket(masterHost, masterPort);
-             ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-             ObjectInputStream input = new ObjectInputStream(socket.getInputStream())) {
-                System.out.print("Διάλεξε κατάστημα: ");
-                String storeName = in.nextLine();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-                System.out.print("Προϊόν προς αγορά: ");
-                String productName = in.nextLine();
+    // Αποστέλλει καλάθι αγορών στο Master: όλα τα προϊόντα ενός καταστήματος σε ένα αίτημα (typeID 17).
+    // Η αγορά εκτελείται ατομικά, είτε για όλα τα προϊόντα είτε για κανένα.
+    private static void buy(Scanner in) {
+        System.out.print("Διάλεξε κατάστημα: ");
+        String storeName = in.nextLine();
 
-                System.out.print("Ποσότητα: ");
-                int quantity = Integer.parseInt(in.nextLine());
+        List<CartRequest.Line> lines = new ArrayList<>();
+        while (true) {
+            System.out.print("Προϊόν προς αγορά (κενό για ολοκλήρωση): ");
+            String productName = in.nextLine();
+            if (productName.isEmpty()) {
+                break;
+            }
+            System.out.print("Ποσότητα: ");
+            int quantity = Integer.parseInt(in.nextLine());
+            lines.add(new CartRequest.Line(productName, quantity));
+        }
+        if (lines.isEmpty()) {
+            System.out.println("Το καλάθι είναι άδειο.");
+            return;
+        }
 
-                // Δημιουργία και αποστολή Chunk αγοράς
-                BuyRequest buyRequest = new BuyRequest(storeName, productName, quantity);
-                Chunk chunk = new Chunk("user", 11, buyRequest);
-                out.writeObject(chunk);
-                out.flush();
+        try {
+            Chunk response = ask(new Chunk("user", 17, new CartRequest(storeName, lines)));
 
-                // Εμφάνιση αποτελέσματος
-                Chunk response = (Chunk) input.readObject();
+            // Εμφάνιση αποτελέσματος ανά προϊόν
+            if (!(response.getData() instanceof List<?> results)) {
                 System.out.println("Αποτέλεσμα αγοράς: " + response.getData());
+                return;
+            }
+            boolean ok = true;
+            for (Object o : results) {
+                CartRequest.LineResult r = (CartRequest.LineResult) o;
+                ok &= r.status() == CartRequest.OK;
+                System.out.printf("  - %dx %s: %s (διαθέσιμα %d)%n", r.quantity(), r.productName(),
+                        CartRequest.describe(r.status()), r.available());
+            }
+            System.out.println(ok ? "Η αγορά ολοκληρώθηκε." : "Η αγορά δεν εκτελέστηκε.");
 
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
@@ -144,17 +229,11 @@ public class DummyUser {
 
         Chunk chunk = new Chunk("user", 12, data);
 
-        try (Socket socket = new Socket(masterHost, masterPort);
-             ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-             ObjectInputStream input = new ObjectInputStream(socket.getInputStream())) {
-
-            out.writeObject(chunk);
-            out.flush();
-
-            Chunk response = (Chunk) input.readObject();
+        try {
+            Chunk response = ask(chunk);
             System.out.println("Απάντηση: " + response.getData());
 
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
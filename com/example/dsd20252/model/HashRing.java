@@ -0,0 +1,105 @@
+package com.example.dsd20252.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Consistent-hash ring για την ανάθεση καταστημάτων σε Workers.
+ * Κάθε Worker τοποθετείται στο δαχτυλίδι με weight * virtualNodes εικονικούς κόμβους, και ένα κατάστημα
+ * ανήκει στον πρώτο κόμβο δεξιόστροφα από το hash του ονόματός του. Όταν προστίθεται ή αφαιρείται Worker
+ * αλλάζει ιδιοκτήτη μόνο ένα μικρό μέρος των καταστημάτων, αντί για σχεδόν όλα όπως με το hashCode % N.
+ * Τα αντικείμενα είναι αμετάβλητα: κάθε αλλαγή μελών επιστρέφει νέο HashRing.
+ */
+class HashRing {
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final int virtualNodes;
+    private final List<WorkerInfo> workers;
+    private final TreeMap<Long, WorkerInfo> ring = new TreeMap<>();
+
+    HashRing(List<WorkerInfo> workers, int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+        this.workers = List.copyOf(workers);
+        for (WorkerInfo w : workers) {
+            for (int i = 0; i < w.weight() * virtualNodes; i++) {
+                ring.put(hash(w.id() + "#" + i), w);
+            }
+        }
+    }
+
+    List<WorkerInfo> workers() {
+        return workers;
+    }
+
+    boolean isEmpty() {
+        return workers.isEmpty();
+    }
+
+    // Ο Worker στον οποίο ανήκει το κατάστημα
+    WorkerInfo ownerOf(String storeName) {
+        if (ring.isEmpty()) {
+            throw new IllegalStateException("Δεν υπάρχουν Workers");
+        }
+        Map.Entry<Long, WorkerInfo> e = ring.ceilingEntry(hash(Worker.nameKey(storeName)));
+        return e != null ? e.getValue() : ring.firstEntry().getValue();
+    }
+
+    // Οι n πρώτοι διαφορετικοί Workers δεξιόστροφα από το κατάστημα: ο πρώτος είναι ο primary,
+    // οι υπόλοιποι κρατούν αντίγραφα με τη σειρά που θα αναλάβουν αν πέσει ο προηγούμενος
+    List<WorkerInfo> preferenceList(String storeName, int n) {
+        if (ring.isEmpty()) {
+            throw new IllegalStateException("Δεν υπάρχουν Workers");
+        }
+        n = Math.min(n, workers.size());
+        List<WorkerInfo> result = new ArrayList<>(n);
+        long h = hash(Worker.nameKey(storeName));
+        for (WorkerInfo w : ring.tailMap(h, true).values()) {
+            if (result.size() == n) {
+                return result;
+            }
+            if (!result.contains(w)) {
+                result.add(w);
+            }
+        }
+        for (WorkerInfo w : ring.headMap(h, false).values()) {
+            if (result.size() == n) {
+                break;
+            }
+            if (!result.contains(w)) {
+                result.add(w);
+            }
+        }
+        return result;
+    }
+
+    HashRing with(WorkerInfo worker) {
+        List<WorkerInfo> updated = new ArrayList<>(workers);
+        updated.removeIf(w -> w.id().equals(worker.id()));
+        updated.add(worker);
+        return new HashRing(updated, virtualNodes);
+    }
+
+    HashRing without(WorkerInfo worker) {
+        List<WorkerInfo> updated = new ArrayList<>(workers);
+        updated.removeIf(w -> w.id().equals(worker.id()));
+        return new HashRing(updated, virtualNodes);
+    }
+
+    // Τα πρώτα 8 bytes του MD5 (όπως στο ketama), ώστε οι κόμβοι να μοιράζονται ομοιόμορφα
+    private static long hash(String key) {
+        byte[] digest = MD5.get().digest(key.getBytes(StandardCharsets.UTF_8));
+        long h = 0;
+        for (int i = 0; i < 8; i++) {
+            h = (h << 8) | (digest[i] & 0xFF);
+        }
+        return h;
+    }
+}
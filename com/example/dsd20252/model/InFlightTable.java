@@ -0,0 +1,214 @@
+package com.example.dsd20252.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Πίνακας των αιτημάτων σε εξέλιξη του Master, με κλειδί το segmentId (int, χωρίς boxing).
+ * Χωρίζεται σε stripes με δικό τους lock, ώστε τα threads των χρηστών και των απαντήσεων των Workers να
+ * μην περιμένουν το ένα το άλλο· κάθε stripe είναι hash table ανοιχτής διευθυνσιοδότησης (linear probing,
+ * διαγραφή με μετακίνηση προς τα πίσω, χωρίς tombstones).
+ * Έχει ανώτατο πλήθος εγγραφών: όταν γεμίσει το put αποτυγχάνει και το αίτημα απορρίπτεται, αντί να
+ * μεγαλώνει η μνήμη. Κάθε εγγραφή λήγει μετά από ttl· το expire (καλείται περιοδικά) αφαιρεί όσες
+ * έμειναν, π.χ. αιτήματα που δεν ολοκληρώθηκαν λόγω σφάλματος.
+ */
+class InFlightTable<V> {
+    private static final int STRIPES = 16;          // Δύναμη του 2
+    private static final int INITIAL_SLOTS = 16;    // Ανά stripe, δύναμη του 2
+
+    private final Stripe[] stripes;
+    private final int capacity;
+    private final long ttlNanos;
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    InFlightTable(int capacity, long ttlMillis) {
+        this.capacity = capacity;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // Προσθέτει ή αντικαθιστά την εγγραφή· false αν είναι νέα και ο πίνακας είναι γεμάτος
+    boolean put(int key, V value) {
+        int h = hash(key);
+        Stripe stripe = stripes[h & (STRIPES - 1)];
+        long deadline = System.nanoTime() + ttlNanos;
+        synchronized (stripe) {
+            int i = stripe.find(key, h);
+            if (i >= 0) {
+                stripe.values[i] = value;
+                stripe.deadlines[i] = deadline;
+                return true;
+            }
+            if (size.incrementAndGet() > capacity) {
+                size.decrementAndGet();
+                rejected.increment();
+                return false;
+            }
+            stripe.insert(key, h, value, deadline);
+            return true;
+        }
+    }
+
+    V get(int key) {
+        int h = hash(key);
+        Stripe stripe = stripes[h & (STRIPES - 1)];
+        synchronized (stripe) {
+            int i = stripe.find(key, h);
+            return i >= 0 ? valueAt(stripe, i) : null;
+        }
+    }
+
+    // Αφαιρεί και επιστρέφει την εγγραφή (null αν δεν υπάρχει)
+    V remove(int key) {
+        int h = hash(key);
+        Stripe stripe = stripes[h & (STRIPES - 1)];
+        synchronized (stripe) {
+            int i = stripe.find(key, h);
+            if (i < 0) {
+                return null;
+            }
+            V value = valueAt(stripe, i);
+            stripe.delete(i);
+            size.decrementAndGet();
+            return value;
+        }
+    }
+
+    // Αφαιρεί και επιστρέφει τις εγγραφές που έχουν λήξει
+    List<V> expire() {
+        long now = System.nanoTime();
+        List<V> result = new ArrayList<>();
+        List<Integer> keys = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                keys.clear();
+                for (int i = 0; i < stripe.keys.length; i++) {
+                    if (stripe.values[i] != null && now - stripe.deadlines[i] >= 0) {
+                        keys.add(stripe.keys[i]);
+                    }
+                }
+                for (int key : keys) {
+                    int i = stripe.find(key, hash(key));
+                    result.add(valueAt(stripe, i));
+                    stripe.delete(i);
+                    size.decrementAndGet();
+                }
+            }
+        }
+        expired.add(result.size());
+        return result;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    long rejected() {
+        return rejected.sum();
+    }
+
+    long expired() {
+        return expired.sum();
+    }
+
+    // Οι τιμές μπαίνουν μόνο από το put, άρα είναι τύπου V
+    @SuppressWarnings("unchecked")
+    private V valueAt(Stripe stripe, int i) {
+        return (V) stripe.values[i];
+    }
+
+    // Τα segmentId είναι διαδοχικά: τα ανακατεύουμε ώστε να μοιράζονται σε stripes και θέσεις
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Stripe {
+        int[] keys = new int[INITIAL_SLOTS];
+        Object[] values = new Object[INITIAL_SLOTS];    // null = κενή θέση
+        long[] deadlines = new long[INITIAL_SLOTS];
+        int count;
+
+        // Η αρχική θέση ενός κλειδιού (τα χαμηλά bits του hash επιλέγουν το stripe)
+        int home(int h) {
+            return (h >>> 4) & (keys.length - 1);
+        }
+
+        int find(int key, int h) {
+            int mask = keys.length - 1;
+            for (int i = home(h); values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void insert(int key, int h, Object value, long deadline) {
+            if ((count + 1) * 2 > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int i = home(h);
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            deadlines[i] = deadline;
+            count++;
+        }
+
+        // Διαγραφή χωρίς tombstone: οι επόμενες εγγραφές της ίδιας αλυσίδας μετακινούνται προς τα πίσω
+        void delete(int i) {
+            int mask = keys.length - 1;
+            int hole = i;
+            values[hole] = null;
+            int j = hole;
+            while (true) {
+                j = (j + 1) & mask;
+                if (values[j] == null) {
+                    break;
+                }
+                int home = home(hash(keys[j]));
+                // Η εγγραφή μένει αν η αρχική της θέση είναι (κυκλικά) στο (hole, j]
+                boolean stays = hole <= j ? (hole < home && home <= j) : (hole < home || home <= j);
+                if (!stays) {
+                    keys[hole] = keys[j];
+                    values[hole] = values[j];
+                    deadlines[hole] = deadlines[j];
+                    values[j] = null;
+                    hole = j;
+                }
+            }
+            count--;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            Object[] oldValues = values;
+            long[] oldDeadlines = deadlines;
+            keys = new int[oldKeys.length * 2];
+            values = new Object[oldKeys.length * 2];
+            deadlines = new long[oldKeys.length * 2];
+            count = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    insert(oldKeys[i], hash(oldKeys[i]), oldValues[i], oldDeadlines[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.dsd20252.model;
+
+/**
+ * Ιστόγραμμα χρόνων απόκρισης σε μικροδευτερόλεπτα, με τη λογική του HdrHistogram: οι τιμές μέχρι 128
+ * μετράνε ακριβώς και πάνω από αυτό κάθε δύναμη του 2 χωρίζεται σε 64 ίσα κελιά, οπότε κάθε τιμή
+ * αποθηκεύεται με σχετικό σφάλμα κάτω από 1.6% και σταθερή μνήμη (~14 KB), όσες τιμές κι αν καταγραφούν.
+ * Τιμές πάνω από MAX_MICROS μετράνε στο τελευταίο κελί (το max κρατιέται ακριβές).
+ * Δεν είναι thread-safe: κάθε thread γεμίζει το δικό του και στο τέλος συγχωνεύονται με το add.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;       // 128
+    private static final int HALF = SUB_BUCKETS / 2;                   // 64 κελιά ανά δύναμη του 2
+    static final long MAX_MICROS = 3_600_000_000L;                     // 1 ώρα
+
+    private final long[] counts = new long[indexOf(MAX_MICROS) + 1];
+    private long total;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        counts[indexOf(Math.min(micros, MAX_MICROS))]++;
+        total++;
+        sum += micros;
+        min = Math.min(min, micros);
+        max = Math.max(max, micros);
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    long count() {
+        return total;
+    }
+
+    long max() {
+        return max;
+    }
+
+    long min() {
+        return total == 0 ? 0 : min;
+    }
+
+    double mean() {
+        return total == 0 ? 0 : (double) sum / total;
+    }
+
+    // Η μικρότερη τιμή v ώστε τουλάχιστον percentile% των τιμών να είναι <= v (το άνω όριο του κελιού της)
+    long percentile(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueAt(i), max);
+            }
+        }
+        return max;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int sub = (int) (value >>> shift);                              // Στο [64, 128)
+        return SUB_BUCKETS + (shift - 1) * HALF + (sub - HALF);
+    }
+
+    private static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF + 1;
+        long sub = (index - SUB_BUCKETS) % HALF + HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+}
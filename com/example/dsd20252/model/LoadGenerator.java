@@ -0,0 +1,452 @@
+package com.example.dsd20252.model;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Γεννήτρια φορτίου χωρίς διάδραση: στέλνει στον Master τα ίδια αιτήματα με τον DummyUser και τον
+ * ManagerConsole (αναζήτηση, αγορά, καλάθι, βαθμολογία, στατιστικά) με το μίγμα του loadgen.config
+ * και στο τέλος τυπώνει ρυθμό και εκατοστημόρια χρόνου απόκρισης ανά typeID.
+ * Δύο μοντέλα (κλειδί mode):
+ *  - closed: threads πελάτες, ο καθένας στέλνει το επόμενο αίτημα μόλις πάρει απάντηση
+ *  - open: αφίξεις Poisson με μέσο ρυθμό rate/s, ανεξάρτητα από το πόσο αργεί ο Master. Ο χρόνος
+ *    μετριέται από τη στιγμή που έπρεπε να σταλεί το αίτημα, ώστε η αναμονή για ελεύθερο thread να
+ *    μετράει στον χρόνο απόκρισης (αλλιώς ένας αργός Master θα έδειχνε καλύτερους χρόνους, coordinated omission).
+ * Τα καταστήματα του φορτίου είναι είτε συνθετικά (syntheticStores, εισάγονται πριν τη μέτρηση) είτε
+ * διαβάζονται από catalogPath (φάκελος με store.json ή αρχείο .json/.jsonl, που εισάγεται με importCatalog).
+ * Με connections=0 κάθε αίτημα ανοίγει δική του σύνδεση· με connections > 0 τα threads μοιράζονται τόσες
+ * συνδέσεις MasterClient, με πολλά αιτήματα σε εξέλιξη σε καθεμία (pipelining).
+ */
+public class LoadGenerator {
+    private static final String[] OPS = {"search", "buy", "cart", "rate", "stats"};
+    private static final int[] OP_TYPE_IDS = {10, 11, 17, 12, 5};
+    private static final String[] FOOD_CATEGORIES = {"pizzeria", "souvlaki", "burger", "sushi", "vegan", "coffee"};
+    private static final String[] PRODUCT_TYPES = {"food", "drink", "dessert"};
+    private static final String[] SORT_KEYS = {SearchOrder.DISTANCE, SearchOrder.STARS, SearchOrder.PRICE};
+    private static final long LATE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static String masterHost;
+    private static int masterPort;
+    private static String mode;
+    private static int threads;
+    private static double rate;
+    private static int durationSeconds;
+    private static int warmupSeconds;
+    private static int[] weights;
+    private static int searchLimit;
+    private static double searchJitterKm;
+    private static long seed;
+    private static String reportFile;
+    private static int connections;
+    private static MasterClient[] shared;       // connections > 0: οι κοινές συνδέσεις, ανοίγουν όταν χρειαστούν
+
+    private static List<Store> stores;
+
+    // Αποτελέσματα ενός thread· συγχωνεύονται στο τέλος
+    private static class Stats {
+        final LatencyHistogram[] latency = new LatencyHistogram[OPS.length];
+        final long[] errors = new long[OPS.length];
+        final long[] partial = new long[OPS.length];
+        long late;      // open: αιτήματα που στάλθηκαν πάνω από 10 ms μετά την ώρα τους
+
+        Stats() {
+            for (int i = 0; i < OPS.length; i++) {
+                latency[i] = new LatencyHistogram();
+            }
+        }
+
+        void add(Stats other) {
+            for (int i = 0; i < OPS.length; i++) {
+                latency[i].add(other.latency[i]);
+                errors[i] += other.errors[i];
+                partial[i] += other.partial[i];
+            }
+            late += other.late;
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            Properties prop = loadConfig();
+            stores = loadStores(prop);
+            if (stores.isEmpty()) {
+                System.out.println("Δεν υπάρχουν καταστήματα για το φορτίο (syntheticStores ή catalogPath).");
+                return;
+            }
+            run();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static Properties loadConfig() throws IOException {
+        Properties prop = new Properties();
+        prop.load(new FileInputStream(System.getProperty("loadgen.config", "loadgen.config")));
+        masterHost = prop.getProperty("host", "localhost").trim();
+        masterPort = Integer.parseInt(prop.getProperty("masterPort", "12345").trim());
+        mode = prop.getProperty("mode", "closed").trim();
+        if (!mode.equals("closed") && !mode.equals("open")) {
+            throw new IllegalArgumentException("Άγνωστο mode '" + mode + "' (closed/open)");
+        }
+        threads = Integer.parseInt(prop.getProperty("threads", "16").trim());
+        rate = Double.parseDouble(prop.getProperty("rate", "100").trim());
+        durationSeconds = Integer.parseInt(prop.getProperty("durationSeconds", "30").trim());
+        warmupSeconds = Integer.parseInt(prop.getProperty("warmupSeconds", "5").trim());
+        searchLimit = Integer.parseInt(prop.getProperty("searchLimit", "10").trim());
+        searchJitterKm = Double.parseDouble(prop.getProperty("searchJitterKm", "2").trim());
+        seed = Long.parseLong(prop.getProperty("seed", "42").trim());
+        reportFile = prop.getProperty("reportFile", "").trim();
+        connections = Integer.parseInt(prop.getProperty("connections", "0").trim());
+        weights = parseMix(prop.getProperty("mix", "search:70,buy:10,cart:5,rate:10,stats:5"));
+        Tracer.init("loadgen", prop.getProperty("traceFile", ""),
+                Double.parseDouble(prop.getProperty("traceSampleRate", "0").trim()));
+        return prop;
+    }
+
+    // "search:70,buy:10,..." -> βάρη με τη σειρά του OPS (όσα λείπουν έχουν βάρος 0)
+    private static int[] parseMix(String mix) {
+        int[] w = new int[OPS.length];
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split(":");
+            int op = Arrays.asList(OPS).indexOf(kv[0].trim());
+            if (op < 0 || kv.length != 2) {
+                throw new IllegalArgumentException("Μη έγκυρο στοιχείο mix: '" + part.trim() + "' (είδη: " + String.join("/", OPS) + ")");
+            }
+            w[op] = Integer.parseInt(kv[1].trim());
+        }
+        if (Arrays.stream(w).sum() <= 0) {
+            throw new IllegalArgumentException("Το mix δεν έχει κανένα αίτημα");
+        }
+        return w;
+    }
+
+    // ---------------------------------------------------------------- κατάλογος
+
+    private static List<Store> loadStores(Properties prop) throws IOException {
+        int synthetic = Integer.parseInt(prop.getProperty("syntheticStores", "0").trim());
+        if (synthetic > 0) {
+            List<Store> generated = syntheticStores(synthetic,
+                    Double.parseDouble(prop.getProperty("centerLatitude", "37.98").trim()),
+                    Double.parseDouble(prop.getProperty("centerLongitude", "23.73").trim()),
+                    Double.parseDouble(prop.getProperty("spreadKm", "10").trim()),
+                    Integer.parseInt(prop.getProperty("productsPerStore", "10").trim()), seed);
+            importStores(generated);
+            return generated;
+        }
+        String catalogPath = prop.getProperty("catalogPath", "").trim();
+        if (catalogPath.isEmpty()) {
+            return List.of();
+        }
+        List<Store> catalog = new ArrayList<>();
+        Path path = Path.of(catalogPath);
+        List<Path> files;
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> walk = Files.walk(path)) {
+                files = walk.filter(p -> p.getFileName().toString().equals("store.json")
+                        || p.getFileName().toString().endsWith(".jsonl")).sorted().toList();
+            }
+        } else {
+            files = List.of(path);
+        }
+        for (Path file : files) {
+            try {
+                StoreParser.parseStores(file, catalog::add);
+            } catch (IOException e) {
+                System.err.println("Παράλειψη " + file + ": " + e.getMessage());
+            }
+        }
+        System.out.println("Κατάλογος: " + catalog.size() + " καταστήματα από " + files.size() + " αρχεία");
+        if (Boolean.parseBoolean(prop.getProperty("importCatalog", "false").trim())) {
+            importStores(catalog);
+        }
+        return catalog;
+    }
+
+    // Καταστήματα με τυχαία θέση μέσα σε spreadKm από το κέντρο και αρκετό απόθεμα ώστε οι αγορές να μην το
+    // εξαντλούν. Ίδιο seed, ίδιος κατάλογος (τον χρησιμοποιούν και τα MicroBenchmarks).
+    static List<Store> syntheticStores(int count, double centerLat, double centerLon, double spreadKm,
+                                       int productsPerStore, long seed) {
+        double spreadDegrees = spreadKm / SpatialIndex.KM_PER_DEGREE;
+        Random random = new Random(seed);
+
+        List<Store> generated = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Store store = new Store();
+            store.setStoreName("Load Store " + i);
+            store.setLatitude(centerLat + (random.nextDouble() * 2 - 1) * spreadDegrees);
+            store.setLongitude(centerLon + (random.nextDouble() * 2 - 1) * spreadDegrees);
+            store.setFoodCategory(FOOD_CATEGORIES[random.nextInt(FOOD_CATEGORIES.length)]);
+            store.setStars(1 + random.nextInt(5));
+            store.setNoOfVotes(random.nextInt(500));
+            store.setStoreLogo("logo-" + i + ".png");
+            List<Product> products = new ArrayList<>(productsPerStore);
+            double sum = 0;
+            for (int j = 0; j < productsPerStore; j++) {
+                Product p = new Product();
+                p.setProductName("Product " + j);
+                p.setProductType(PRODUCT_TYPES[random.nextInt(PRODUCT_TYPES.length)]);
+                p.setPrice(Math.round((2 + random.nextDouble() * 18) * 100) / 100.0);
+                p.setAvailableAmount(1_000_000);
+                p.setInitialAmount(1_000_000);
+                products.add(p);
+                sum += p.getPrice();
+            }
+            store.setProducts(new ArrayList<>(products));
+            // Ίδια κατηγοριοποίηση τιμής με τον StoreParser
+            double avg = productsPerStore == 0 ? 0 : sum / productsPerStore;
+            store.setPriceCategory(avg <= 5 ? "$" : avg <= 15 ? "$$" : "$$$");
+            generated.add(store);
+        }
+        return generated;
+    }
+
+    // Μαζική εισαγωγή (typeID 14) σε ομάδες των 500, όπως η επιλογή 11 του ManagerConsole
+    private static void importStores(List<Store> catalog) throws IOException {
+        long start = System.nanoTime();
+        int inserted = 0;
+        for (int from = 0; from < catalog.size(); from += 500) {
+            List<Store> batch = catalog.subList(from, Math.min(catalog.size(), from + 500));
+            Chunk response = send(new Chunk("admin", 14, new ArrayList<>(batch)));
+            if (response.getData() instanceof Map<?, ?> counts) {
+                inserted += (Integer) counts.get("inserted");
+            } else {
+                System.err.println("Master: " + response.getData());
+            }
+        }
+        System.out.printf("Εισαγωγή: %d/%d καταστήματα σε %.2f s%n", inserted, catalog.size(),
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    // ---------------------------------------------------------------- εκτέλεση
+
+    private static void run() throws InterruptedException {
+        System.out.printf("Φορτίο: mode=%s threads=%d%s συνδέσεις=%s διάρκεια=%ds (+%ds προθέρμανση), καταστήματα=%d%n",
+                mode, threads, mode.equals("open") ? " rate=" + rate + "/s" : "",
+                connections > 0 ? String.valueOf(connections) : "ανά αίτημα", durationSeconds, warmupSeconds,
+                stores.size());
+        shared = connections > 0 ? new MasterClient[connections] : null;
+
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        Arrivals arrivals = mode.equals("open") ? new Arrivals(start, rate, seed) : null;
+
+        Stats[] perThread = new Stats[threads];
+        Thread[] clients = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            Stats stats = perThread[t] = new Stats();
+            Random random = new Random(seed + 1 + t);
+            int slot = connections > 0 ? t % connections : -1;
+            clients[t] = Thread.ofPlatform().name("load-", t).start(
+                    () -> clientLoop(random, stats, arrivals, measureFrom, end, slot));
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        if (shared != null) {
+            for (MasterClient client : shared) {
+                if (client != null) {
+                    client.close();
+                }
+            }
+        }
+
+        Stats total = new Stats();
+        for (Stats stats : perThread) {
+            total.add(stats);
+        }
+        report(total, durationSeconds);
+    }
+
+    // slot: η κοινή σύνδεση του thread (-1: νέα σύνδεση ανά αίτημα)
+    private static void clientLoop(Random random, Stats stats, Arrivals arrivals, long measureFrom, long end, int slot) {
+        while (true) {
+            long intended;
+            if (arrivals != null) {
+                intended = arrivals.next();
+                if (intended >= end) {
+                    return;
+                }
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                } else if (-wait > LATE_NANOS && intended >= measureFrom) {
+                    stats.late++;
+                }
+            } else {
+                intended = System.nanoTime();
+                if (intended >= end) {
+                    return;
+                }
+            }
+
+            int op = pickOp(random);
+            Chunk request = request(op, random);
+            TraceContext trace = Tracer.begin(null);
+            request.setTrace(trace);
+            long sent = System.nanoTime();
+            Chunk response;
+            try {
+                response = slot < 0 ? send(request) : sharedClient(slot).call(request);
+            } catch (IOException e) {
+                response = null;
+            }
+            long received = System.nanoTime();
+            // Το span του client ξεκινά από τον προγραμματισμένο χρόνο (open: μετρά και την καθυστέρηση αποστολής)
+            Tracer.span("client.send", trace, sent, received);
+            Tracer.requestSpan("client." + OPS[op], trace, 0, intended, received,
+                    "typeID", request.getTypeID(), "reply", response == null ? "io_error" : response.getTypeID());
+            long micros = (received - intended) / 1_000;
+            if (intended < measureFrom) {
+                continue;   // Προθέρμανση
+            }
+            stats.latency[op].record(micros);
+            if (response == null || response.getTypeID() == -1) {
+                stats.errors[op]++;
+            } else if (response.getDown() != null && !response.getDown().isEmpty()) {
+                stats.partial[op]++;
+            }
+        }
+    }
+
+    private static int pickOp(Random random) {
+        int r = random.nextInt(Arrays.stream(weights).sum());
+        for (int op = 0; op < weights.length; op++) {
+            r -= weights[op];
+            if (r < 0) {
+                return op;
+            }
+        }
+        return 0;
+    }
+
+    // Το αίτημα ενός είδους για τυχαίο κατάστημα του καταλόγου, με τα ίδια δεδομένα που στέλνουν οι πελάτες
+    private static Chunk request(int op, Random random) {
+        Store store = stores.get(random.nextInt(stores.size()));
+        List<Product> products = store.getProducts();
+        return switch (OPS[op]) {
+            case "search" -> {
+                Map<String, Object> filters = new HashMap<>();
+                double jitter = searchJitterKm / SpatialIndex.KM_PER_DEGREE;
+                filters.put("latitude", store.getLatitude() + (random.nextDouble() * 2 - 1) * jitter);
+                filters.put("longitude", store.getLongitude() + (random.nextDouble() * 2 - 1) * jitter);
+                filters.put("sortBy", SORT_KEYS[random.nextInt(SORT_KEYS.length)]);
+                filters.put("limit", searchLimit);
+                if (random.nextInt(4) == 0) {
+                    filters.put("foodCategory", store.getFoodCategory());
+                }
+                yield new Chunk("loadgen", 10, filters);
+            }
+            case "buy" -> {
+                String product = products.isEmpty() ? "-" : products.get(random.nextInt(products.size())).getProductName();
+                yield new Chunk("loadgen", 11, new BuyRequest(store.getStoreName(), product, 1));
+            }
+            case "cart" -> {
+                List<CartRequest.Line> lines = new ArrayList<>();
+                int count = products.isEmpty() ? 1 : 1 + random.nextInt(Math.min(4, products.size()));
+                for (int i = 0; i < count; i++) {
+                    String product = products.isEmpty() ? "-" : products.get(random.nextInt(products.size())).getProductName();
+                    lines.add(new CartRequest.Line(product, 1));
+                }
+                yield new Chunk("loadgen", 17, new CartRequest(store.getStoreName(), lines));
+            }
+            case "rate" -> {
+                Map<String, Object> data = new HashMap<>();
+                data.put("storeName", store.getStoreName());
+                data.put("rating", 1 + random.nextInt(5));
+                yield new Chunk("loadgen", 12, data);
+            }
+            default -> new Chunk("admin", 5, null);
+        };
+    }
+
+    // Η κοινή σύνδεση ενός slot· ανοίγει ξανά αν κόπηκε
+    private static MasterClient sharedClient(int slot) throws IOException {
+        synchronized (shared) {
+            if (shared[slot] == null || !shared[slot].isOpen()) {
+                shared[slot] = MasterClient.connect(masterHost, masterPort);
+            }
+            return shared[slot];
+        }
+    }
+
+    private static Chunk send(Chunk chunk) throws IOException {
+        try (Socket socket = new Socket(masterHost, masterPort);
+             ChunkOutputStream out = new ChunkOutputStream(socket.getOutputStream());
+             ChunkInputStream in = new ChunkInputStream(socket.getInputStream())) {
+            out.negotiate(in.getPeerVersion());
+            out.writeChunk(chunk);
+            return in.readChunk();
+        }
+    }
+
+    // Χρονοδιάγραμμα αφίξεων Poisson για το open μοντέλο, κοινό για όλα τα threads
+    private static class Arrivals {
+        private final Random random;
+        private final double meanGapNanos;
+        private long next;
+
+        Arrivals(long start, double rate, long seed) {
+            this.random = new Random(seed);
+            this.meanGapNanos = 1e9 / rate;
+            this.next = start;
+        }
+
+        synchronized long next() {
+            next += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+            return next;
+        }
+    }
+
+    // ---------------------------------------------------------------- αναφορά
+
+    private static void report(Stats total, int seconds) {
+        StringBuilder csv = new StringBuilder("typeID,request,count,errors,partial,throughput,mean_ms,p50_ms,p90_ms,p99_ms,p999_ms,max_ms\n");
+        System.out.printf("%n%-7s %-7s %9s %7s %7s %9s %8s %8s %8s %8s %8s %8s%n", "typeID", "αίτημα", "πλήθος",
+                "σφάλμ.", "μερικά", "req/s", "μέσος", "p50", "p90", "p99", "p99.9", "max");
+        LatencyHistogram all = new LatencyHistogram();
+        long errors = 0, partial = 0;
+        for (int op = 0; op < OPS.length; op++) {
+            LatencyHistogram h = total.latency[op];
+            if (h.count() == 0) {
+                continue;
+            }
+            printRow(csv, String.valueOf(OP_TYPE_IDS[op]), OPS[op], h, total.errors[op], total.partial[op], seconds);
+            all.add(h);
+            errors += total.errors[op];
+            partial += total.partial[op];
+        }
+        printRow(csv, "-", "όλα", all, errors, partial, seconds);
+        System.out.println("(χρόνοι σε ms)");
+        if (total.late > 0) {
+            System.out.println("⚠ " + total.late + " αιτήματα στάλθηκαν με καθυστέρηση πάνω από 10 ms: "
+                    + "αυξήστε τα threads, η γεννήτρια δεν προλαβαίνει τον ρυθμό.");
+        }
+        if (!reportFile.isEmpty()) {
+            try {
+                Files.writeString(Path.of(reportFile), csv);
+                System.out.println("Αναφορά: " + reportFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void printRow(StringBuilder csv, String typeID, String name, LatencyHistogram h, long errors,
+                                 long partial, int seconds) {
+        double throughput = (double) h.count() / seconds;
+        double[] ms = {h.mean() / 1000, h.percentile(50) / 1000.0, h.percentile(90) / 1000.0,
+                h.percentile(99) / 1000.0, h.percentile(99.9) / 1000.0, h.max() / 1000.0};
+        System.out.printf("%-7s %-7s %9d %7d %7d %9.1f %8.2f %8.2f %8.2f %8.2f %8.2f %8.2f%n", typeID, name,
+                h.count(), errors, partial, throughput, ms[0], ms[1], ms[2], ms[3], ms[4], ms[5]);
+        csv.append(String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f%n", typeID,
+                name.equals("όλα") ? "all" : name, h.count(), errors, partial, throughput, ms[0], ms[1], ms[2],
+                ms[3], ms[4], ms[5]));
+    }
+}
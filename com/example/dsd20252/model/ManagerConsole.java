@@ -2,7 +2,12 @@ package com.example.dsd20252.model;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 /**
  * Κλάση ManagerConsole - Διαχειρίζεται τις λειτουργίες του manager.
@@ -12,6 +17,10 @@ import java.util.*;
 public class ManagerConsole {
     private static String masterHost;
     private static int masterPort;
+    // Μαζική εισαγωγή: καταστήματα ανά μήνυμα, threads ανάλυσης JSON και ταυτόχρονες συνδέσεις προς τον Master
+    private static int importBatchSize;
+    private static int importThreads;
+    private static int importConnections;
 
     public static void main(String[] args) {
         loadConfig();
@@ -27,6 +36,10 @@ public class ManagerConsole {
                 System.out.println("6. Συνολικές πωλήσεις ανά τύπο καταστήματος");
                 System.out.println("7. Συνολικές πωλήσεις ανά κατηγορία προϊόντος");
                 System.out.println("8. Έξοδος");
+                System.out.println("9. Προσθήκη Worker");
+                System.out.println("10. Αφαίρεση Worker");
+                System.out.println("11. Μαζική εισαγωγή καταστημάτων");
+                System.out.println("12. Μετρικές (Master και Workers)");
                 System.out.print("Επιλογή: ");
 
                 String choice = scanner.nextLine();
@@ -40,6 +53,10 @@ public class ManagerConsole {
                     case "6" -> requestSalesByStoreType();
                     case "7" -> requestSalesByProductCategory();
                     case "8" -> System.exit(0);
+                    case "9" -> changeWorkers(scanner, 20);
+                    case "10" -> changeWorkers(scanner, 21);
+                    case "11" -> bulkImport(scanner);
+                    case "12" -> sendToMaster(new Chunk("admin", 30, null), true);
                     default -> System.out.println("Μη έγκυρη επιλογή.");
                 }
             }
@@ -52,6 +69,10 @@ public class ManagerConsole {
             prop.load(new FileInputStream("manager.config"));
             masterHost = prop.getProperty("host");
             masterPort = Integer.parseInt(prop.getProperty("masterPort"));
+            importBatchSize = Integer.parseInt(prop.getProperty("importBatchSize", "500").trim());
+            importThreads = Integer.parseInt(prop.getProperty("importThreads",
+                    String.valueOf(Runtime.getRuntime().availableProcessors())).trim());
+            importConnections = Integer.parseInt(prop.getProperty("importConnections", "4").trim());
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -68,6 +89,126 @@ public class ManagerConsole {
             System.out.println("Σφάλμα κατά την ανάγνωση JSON: " + e.getMessage());
         }
     }
+    /*
+     * Μαζική εισαγωγή: βρίσκει όλα τα store.json και τα αρχεία JSON lines (*.jsonl, ένα κατάστημα ανά γραμμή)
+     * κάτω από έναν φάκελο (π.χ. stores/) ή δέχεται απευθείας ένα αρχείο. Τα αναλύει παράλληλα με τον
+     * streaming parser και στέλνει τα καταστήματα σε ομάδες των importBatchSize (typeID 14), από
+     * importConnections συνδέσεις ταυτόχρονα. Ο Master μοιράζει κάθε ομάδα στους Workers. Στο τέλος τυπώνει
+     * αναφορά με τον ρυθμό.
+     */
+    private static void bulkImport(Scanner scanner) {
+        System.out.print("📁 Δώσε φάκελο με υποφακέλους καταστημάτων ή αρχείο .jsonl: ");
+        Path root = Path.of(scanner.nextLine());
+        List<Path> sources;
+        try (Stream<Path> files = Files.walk(root)) {
+            sources = files.filter(p -> Files.isRegularFile(p) && isCatalogFile(p)).toList();
+        } catch (IOException e) {
+            System.out.println("Σφάλμα κατά την ανάγνωση του φακέλου: " + e.getMessage());
+            return;
+        }
+        if (sources.isEmpty()) {
+            System.out.println("Δεν βρέθηκε κανένα store.json ή .jsonl κάτω από " + root);
+            return;
+        }
+        System.out.println("Βρέθηκαν " + sources.size() + " αρχεία καταστημάτων.");
+
+        long start = System.nanoTime();
+        AtomicInteger parsed = new AtomicInteger();
+        AtomicInteger filesDone = new AtomicInteger();
+        AtomicInteger inserted = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger batches = new AtomicInteger();
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService parsers = Executors.newFixedThreadPool(Math.max(1, importThreads));
+        ExecutorService senders = Executors.newFixedThreadPool(Math.max(1, importConnections));
+        List<Store> batch = new ArrayList<>();
+        int step = Math.max(1, sources.size() / 10);
+
+        for (Path source : sources) {
+            parsers.execute(() -> {
+                try {
+                    // Κάθε κατάστημα μπαίνει στην ομάδα μόλις διαβαστεί, οπότε ένα μεγάλο .jsonl
+                    // δεν χρειάζεται να χωρέσει ολόκληρο στη μνήμη
+                    StoreParser.parseStores(source, store -> {
+                        List<Store> full = null;
+                        synchronized (batch) {
+                            batch.add(store);
+                            if (batch.size() >= importBatchSize) {
+                                full = new ArrayList<>(batch);
+                                batch.clear();
+                            }
+                        }
+                        if (full != null) {
+                            submitBatch(senders, full, inserted, failed, batches, errors);
+                        }
+                        parsed.incrementAndGet();
+                    });
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    errors.add(e.getMessage());
+                }
+                int done = filesDone.incrementAndGet();
+                if (done % step == 0) {
+                    System.out.println("Πρόοδος: " + done + "/" + sources.size() + " αρχεία, "
+                            + parsed.get() + " καταστήματα αναλύθηκαν, " + inserted.get() + " εισήχθησαν");
+                }
+            });
+        }
+        try {
+            parsers.shutdown();
+            parsers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            if (!batch.isEmpty()) {
+                submitBatch(senders, new ArrayList<>(batch), inserted, failed, batches, errors);
+            }
+            senders.shutdown();
+            senders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println("=== Αναφορά εισαγωγής ===");
+        System.out.println("Καταστήματα: " + parsed.get() + ", εισήχθησαν: " + inserted.get() + ", απέτυχαν: " + failed.get());
+        System.out.printf("Μηνύματα: %d, χρόνος: %.2f s, ρυθμός: %.0f καταστήματα/s%n",
+                batches.get(), seconds, inserted.get() / Math.max(seconds, 1e-9));
+        for (String error : errors.subList(0, Math.min(10, errors.size()))) {
+            System.out.println("  " + error);
+        }
+        if (errors.size() > 10) {
+            System.out.println("  ... και άλλα " + (errors.size() - 10) + " σφάλματα");
+        }
+    }
+
+    private static boolean isCatalogFile(Path p) {
+        String name = p.getFileName().toString();
+        return name.equals("store.json") || name.endsWith(".jsonl");
+    }
+
+    private static void submitBatch(ExecutorService senders, List<Store> stores, AtomicInteger inserted,
+                                    AtomicInteger failed, AtomicInteger batches, List<String> errors) {
+        senders.execute(() -> {
+            try (Socket socket = new Socket(masterHost, masterPort);
+                 ChunkOutputStream out = new ChunkOutputStream(socket.getOutputStream());
+                 ChunkInputStream in = new ChunkInputStream(socket.getInputStream())) {
+                out.negotiate(in.getPeerVersion());
+                out.writeChunk(new Chunk("admin", 14, stores));
+                Chunk response = in.readChunk();
+                batches.incrementAndGet();
+                if (response.getData() instanceof Map<?, ?> counts) {
+                    inserted.addAndGet((Integer) counts.get("inserted"));
+                    failed.addAndGet((Integer) counts.get("failed"));
+                } else {
+                    failed.addAndGet(stores.size());
+                    errors.add("Master: " + response.getData());
+                }
+            } catch (IOException e) {
+                failed.addAndGet(stores.size());
+                errors.add("Αποστολή " + stores.size() + " καταστημάτων: " + e.getMessage());
+            }
+        });
+    }
+
     // Αποστολή ενημέρωσης αποθέματος για συγκεκριμένο προϊόν
     private static void updateProductAmount(Scanner scanner) {
         System.out.print("Όνομα καταστήματος: ");
@@ -133,18 +274,40 @@ public class ManagerConsole {
         sendToMaster(chunk, true);
     }
 
+    // Προσθήκη (typeID 20) ή αφαίρεση (typeID 21) Worker· ο Master μετακινεί μόνο τα καταστήματα που επηρεάζονται
+    private static void changeWorkers(Scanner scanner, int typeID) {
+        Map<String, Object> data = new HashMap<>();
+        System.out.print("Host του Worker: ");
+        data.put("host", scanner.nextLine());
+        System.out.print("Port του Worker: ");
+        data.put("port", Integer.parseInt(scanner.nextLine()));
+        int weight = 1;
+        if (typeID == 20) {
+            System.out.print("Βάρος (1 = κανονικό): ");
+            String line = scanner.nextLine();
+            if (!line.isEmpty()) weight = Integer.parseInt(line);
+        }
+        data.put("weight", weight);
+
+        Chunk chunk = new Chunk("admin", typeID, data);
+        sendToMaster(chunk, true);
+    }
+
     //Αποστολή chunk στον Master
     private static void sendToMaster(Chunk chunk, boolean expectsResponse) {
         try (Socket socket = new Socket(masterHost, masterPort);
-             ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-             ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) {
+             ChunkOutputStream out = new ChunkOutputStream(socket.getOutputStream());
+             ChunkInputStream in = new ChunkInputStream(socket.getInputStream())) {
+            out.negotiate(in.getPeerVersion());
 
-            out.writeObject(chunk);
-            out.flush();
+            out.writeChunk(chunk);
             System.out.println("Request sent to Master.");
 
             if (expectsResponse) {
-                Chunk response = (Chunk) in.readObject();
+                Chunk response = in.readChunk();
+                if (response.getDown() != null && !response.getDown().isEmpty()) {
+                    System.out.println("⚠ Μερικά αποτελέσματα: δεν απάντησαν εγκαίρως οι Workers " + response.getDown());
+                }
                 System.out.println("Response from Master:");
                 System.out.println(response.getData());
             }
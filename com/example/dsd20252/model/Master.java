@@ -3,36 +3,77 @@ package com.example.dsd20252.model;
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
-// Εγγραφή που περιέχει πληροφορίες για έναν Worker (διεύθυνση και port)
-record WorkerInfo(String host, int port) {}
 /**
  * Η κλάση Master αποτελεί τον κεντρικό διαχειριστή του κατανεμημένου συστήματος.
- * Αποδέχεται αιτήματα από πελάτες και διαχειριστές μέσω TCP συνδέσεων, τα αναθέτει σε Workers με χρήση hash-based κατανομής
+ * Αποδέχεται αιτήματα από πελάτες και διαχειριστές μέσω TCP συνδέσεων, τα αναθέτει σε Workers με χρήση consistent hashing (HashRing)
  * και συλλέγει/συνενώνει τα αποτελέσματα.
  * Υλοποιεί MapReduce-style ροές για αναζητήσεις, και διαχειρίζεται τις λειτουργίες όπως αγορά προϊόντων, ενημερώσεις καταστημάτων,
  * στατιστικά πωλήσεων και βαθμολόγηση.
+ * Κάθε κατάστημα αποθηκεύεται σε replicationFactor Workers (preference list του ring). Οι εγγραφές πηγαίνουν στον
+ * πρώτο διαθέσιμο, που τις προωθεί στους υπόλοιπους. Ένας Worker που δεν απαντά σημειώνεται εκτός λειτουργίας και
+ * τα καταστήματά του εξυπηρετούνται από τα αντίγραφα μέχρι να επανέλθει και να ξανασυγχρονιστεί.
  */
 public class Master {
     private static final boolean DEBUG_MODE = true;     // Ενεργοποίηση/απενεργοποίηση μηνυμάτων debug
 
-    private static List<WorkerInfo> workers = new ArrayList<>();    // Λίστα με όλους τους διαθέσιμους Workers
+    // Οι διαθέσιμοι Workers και η ανάθεση καταστημάτων σε αυτούς. Αντικαθίσταται ολόκληρο όταν αλλάζουν τα μέλη.
+    private static volatile HashRing ring;
+    // Μία μόνιμη σύνδεση ανά Worker (κλειδί: host:port), κοινή για όλα τα αιτήματα
+    private static final Map<String, PersistentConnection> workerConnections = new HashMap<>();
+    private static int replicationFactor;   // Σε πόσους Workers αποθηκεύεται κάθε κατάστημα
+    // Workers (host:port) που δεν απάντησαν· δεν τους στέλνουμε αιτήματα μέχρι να περάσουν το heartbeat
+    private static final Set<String> down = ConcurrentHashMap.newKeySet();
+    // Workers που επανήλθαν και ξανασυγχρονίζονται (βλ. recover): λαμβάνουν τα αντίγραφα των εγγραφών αλλά δεν
+    // είναι primary ούτε απαντούν σε αναγνώσεις μέχρι να επιβεβαιώσουν όλα τα καταστήματά τους
+    private static final Set<String> recovering = ConcurrentHashMap.newKeySet();
+    // Κλείδωμα για τις αλλαγές μελών και την επαναφορά Workers, ώστε να μη γίνονται ταυτόχρονα. Όχι synchronized:
+    // το virtual thread που περιμένει τα acks δεν πρέπει να δεσμεύει τον carrier του
+    private static final Lock membershipLock = new ReentrantLock();
+    // Οι εγγραφές επιλέγουν holders από το ring και στέλνονται με το read lock· η αλλαγή μελών κρατά το write
+    // lock από την αποστολή των μετακινήσεων μέχρι την αλλαγή του ring (βλ. changeMembership)
+    private static final ReadWriteLock routingLock = new ReentrantReadWriteLock();
+    // Επιβεβαιώσεις (typeID 15) των καταστημάτων που μετακινούνται, ανά segmentId της αλλαγής μελών
+    private static final Map<Integer, Semaphore> migrationAcks = new ConcurrentHashMap<>();
+    private static long migrationTimeoutMillis;     // Μέγιστη αναμονή των επιβεβαιώσεων πριν ακυρωθεί η αλλαγή
 
     // Θύρες επικοινωνίας για τους χρήστες και για τους Workers
     private static int userPort;
     private static int reducerPort;
-    private static int numberOfWorkers;
+    private static String serverMode;   // blocking: ένα thread ανά σύνδεση, nio: NioServer με selector
 
-    // Χάρτες για παρακολούθηση socket, streams και απαντήσεων χρηστών
-    private static final Map<Integer, Socket> userSockets = new HashMap<>();
-    private static final Map<Integer, ObjectOutputStream> userOutputStreams = new HashMap<>();
-    private static final Map<Integer, Map<String, Integer>> partialProductSales = new HashMap<>();
-    private static final Map<Integer, Integer> responsesReceived = new HashMap<>();
-    private static final Map<Integer, List<Store>> pendingResults = new HashMap<>();
+    // Εκτελεστές για τις συνδέσεις χρηστών και τις απαντήσεις των Workers (βλ. ServerExecutor)
+    private static ServerExecutor userExecutor;
+    private static ServerExecutor workerResponseExecutor;
 
-    private static int segmentIdCounter = 0;
-    private static final List<Store> allStores = new ArrayList<>();
+    // Αιτήματα που περιμένουν απαντήσεις Workers, ανά segmentId (με ανώτατο πλήθος και λήξη, βλ. InFlightTable)
+    private static InFlightTable<PendingRequest> pending;
+    // Χρόνοι απόκρισης κάθε Worker (host:port) για το προσαρμοστικό timeout
+    private static final Map<String, WorkerHealth> health = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "request-deadlines");
+        t.setDaemon(true);
+        return t;
+    });
+    private static long requestTimeoutMillis;   // Μέγιστη αναμονή για ένα αίτημα scatter-gather
+    private static long workerTimeoutMinMillis; // Κάτω όριο του προσαρμοστικού timeout ανά Worker
+    private static boolean allowPartialResults; // Προεπιλογή όταν το αίτημα δεν ορίζει allowPartial
+    private static SearchCache searchCache;
+
+    private static final AtomicInteger segmentIdCounter = new AtomicInteger();
+    // Όλα τα καταστήματα που έχουν εισαχθεί (κλειδί: Worker.nameKey), για την ανακατανομή όταν αλλάζουν οι Workers
+    private static final Map<String, Store> allStores = new ConcurrentHashMap<>();
 
     public static void main(String[] args) {
         init(); // Αρχικοποίηση του συστήματος
@@ -44,76 +85,165 @@ public class Master {
         try {
             Properties prop = new Properties();
             prop.load(new FileInputStream("master.config"));
-            numberOfWorkers = Integer.parseInt(prop.getProperty("numberOfWorkers"));
+            int numberOfWorkers = Integer.parseInt(prop.getProperty("numberOfWorkers").trim());
             userPort = Integer.parseInt(prop.getProperty("userPort"));
             reducerPort = Integer.parseInt(prop.getProperty("reducerPort"));
+            serverMode = prop.getProperty("serverMode", "blocking").trim();
 
+            List<WorkerInfo> workers = new ArrayList<>();
             for (int i = 1; i <= numberOfWorkers; i++) {
                 String host = prop.getProperty("host" + i);
                 int port = Integer.parseInt(prop.getProperty("worker" + i + "Port"));
-                workers.add(new WorkerInfo(host, port));
+                int weight = Integer.parseInt(prop.getProperty("worker" + i + "Weight", "1").trim());
+                workers.add(new WorkerInfo(host, port, weight));
+            }
+            ring = new HashRing(workers, Integer.parseInt(prop.getProperty("virtualNodes", "100").trim()));
+            replicationFactor = Math.max(1, Integer.parseInt(prop.getProperty("replicationFactor", "1").trim()));
+            if (replicationFactor > numberOfWorkers) {
+                throw new IllegalStateException("master.config: replicationFactor=" + replicationFactor
+                        + " μεγαλύτερο από numberOfWorkers=" + numberOfWorkers
+                        + " (κάθε κατάστημα θα είχε λιγότερα αντίγραφα από όσα ζητήθηκαν)");
             }
+            startHealthChecker(Integer.parseInt(prop.getProperty("healthCheckSeconds", "5").trim()));
+            migrationTimeoutMillis = Long.parseLong(prop.getProperty("migrationTimeoutMillis", "10000").trim());
+            requestTimeoutMillis = Long.parseLong(prop.getProperty("requestTimeoutMillis", "3000").trim());
+            workerTimeoutMinMillis = Long.parseLong(prop.getProperty("workerTimeoutMinMillis", "500").trim());
+            pending = new InFlightTable<>(Integer.parseInt(prop.getProperty("inFlightCapacity", "10000").trim()),
+                    Long.parseLong(prop.getProperty("inFlightTtlMillis", "30000").trim()));
+            startInFlightSweeper();
+            allowPartialResults = Boolean.parseBoolean(prop.getProperty("allowPartialResults", "true").trim());
+            searchCache = new SearchCache(Integer.parseInt(prop.getProperty("searchCacheSize", "1000").trim()),
+                    Double.parseDouble(prop.getProperty("searchCacheCellDegrees", "0.002").trim()),
+                    Worker.SEARCH_RADIUS_KM,
+                    Long.parseLong(prop.getProperty("searchCacheTtlSeconds", "30").trim()) * 1000,
+                    Boolean.parseBoolean(prop.getProperty("searchCacheApproximate", "false").trim()));
+            startCacheStatsReporter(Integer.parseInt(prop.getProperty("searchCacheStatsSeconds", "0").trim()));
+
+            Metrics.init("master", Integer.parseInt(prop.getProperty("metricsPort", "0").trim()));
+            Tracer.init("master", prop.getProperty("traceFile", ""),
+                    Double.parseDouble(prop.getProperty("traceSampleRate", "0").trim()));
+            Metrics.gauge("dsd_inflight_requests", "", pending::size);
+            Metrics.gauge("dsd_inflight_capacity", "", pending::capacity);
+            Metrics.gauge("dsd_inflight_rejected_total", "", pending::rejected);
+            Metrics.gauge("dsd_inflight_expired_total", "", pending::expired);
+            Metrics.gauge("dsd_workers_down", "", down::size);
+
+            userExecutor = ServerExecutor.fromConfig("users", prop);
+            workerResponseExecutor = ServerExecutor.fromConfig("worker-responses", prop);
+            ServerExecutor.startStatsReporter(prop);
 
-            println("Master initialized with " + numberOfWorkers + " workers.");
+            println("Master initialized with " + numberOfWorkers + " workers, replication factor " + replicationFactor + ".");
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     private static void listenForUsers() {
+        if (serverMode.equals("nio")) {
+            // Το αίτημα εκτελείται στον userExecutor· η σύνδεση δεν κρατά thread όσο περιμένει απάντηση
+            startNioServer("users", userPort, true, (connection, chunk) -> {
+                long received = System.nanoTime();
+                if (!userExecutor.trySubmit(() -> handleUserChunk(chunk, connection, received))) {
+                    rejectRequest(connection, chunk, userExecutor);
+                }
+            });
+            return;
+        }
         new Thread(() -> {
             try (ServerSocket serverSocket = new ServerSocket(userPort)) {
                 println("📡 Master listening on port " + userPort);
                 while (true) {
                     Socket clientSocket = serverSocket.accept();
-                    new Thread(() -> handleUser(clientSocket)).start();
+                    if (!userExecutor.tryStartConnection(() -> handleUser(clientSocket))) {
+                        rejectConnection(clientSocket, userExecutor);
+                    }
                 }
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }).start();
     }
-    // Επεξεργασία αιτήματος από χρήστη
+    // Επεξεργασία αιτημάτων από χρήστη (blocking σύνδεση). Η σύνδεση μπορεί να στείλει πολλά αιτήματα χωρίς
+    // να περιμένει τις απαντήσεις (MasterClient)· οι απαντήσεις γράφονται όποτε ολοκληρωθούν, με το id του αιτήματος.
+    // Το thread της σύνδεσης μόνο διαβάζει· κάθε αίτημα εκτελείται στον userExecutor, όπως στο nio.
     private static void handleUser(Socket socket) {
-        Socket userSocket = socket;
-        ObjectOutputStream out = null;
-        ObjectInputStream in = null;
         try {
-            in = new ObjectInputStream(userSocket.getInputStream());
-            out = new ObjectOutputStream(userSocket.getOutputStream());
+            ChunkInputStream in = new ChunkInputStream(socket.getInputStream());
+            ChunkOutputStream out = new ChunkOutputStream(socket.getOutputStream());
+            out.negotiate(in.getPeerVersion());
+            ReplyChannel channel = new SocketReplyChannel(socket, out);
 
-            Chunk chunk = (Chunk) in.readObject();
-            int segmentId;
-            synchronized (Master.class) {
-                segmentId = ++segmentIdCounter;
+            while (true) {
+                Chunk chunk = in.readChunk();
+                long received = System.nanoTime();
+                if (!userExecutor.trySubmit(() -> handleUserChunk(chunk, channel, received))) {
+                    rejectRequest(channel, chunk, userExecutor);
+                }
             }
+        } catch (EOFException e) {
+            // Ο χρήστης έκλεισε τη σύνδεση
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // Εκτελεί ένα αίτημα χρήστη· η απάντηση γράφεται στο out (blocking socket ή σύνδεση NIO)
+    private static void handleUserChunk(Chunk chunk, ReplyChannel channel, long receivedNanos) {
+        int typeID = chunk.getTypeID();
+        long start = System.nanoTime();
+        Metrics.count("dsd_requests_total", typeID);
+        Metrics.record("queue", typeID, start - receivedNanos);
+        // Tracing: συνεχίζουμε το trace του χρήστη ή ξεκινάμε νέο (δειγματοληψία)· το Chunk το μεταφέρει στους Workers
+        TraceContext incoming = chunk.getTrace();
+        TraceContext trace = Tracer.begin(incoming);
+        chunk.setTrace(trace);
+        Tracer.span("master.queue", trace, receivedNanos, start);
+        // Το segmentID του χρήστη είναι το id του αιτήματος στη σύνδεσή του και επιστρέφεται στην απάντηση·
+        // προς τους Workers το αίτημα παίρνει δικό μας segmentID, μοναδικό σε όλο τον Master
+        ReplyChannel out = new MeteredReplyChannel(channel, typeID, chunk.getSegmentID(), receivedNanos, trace,
+                incoming == null ? 0 : incoming.spanId());
+        try {
+            int segmentId = segmentIdCounter.incrementAndGet();
             chunk.setSegmentID(segmentId);
-            userSockets.put(segmentId, socket);
-            userOutputStreams.put(segmentId, out);
 
             switch (chunk.getTypeID()) {
                 case 1 -> {// Προσθήκη καταστήματος
                     Store store = (Store) chunk.getData();
-                    allStores.add(store);
-                    int workerIndex = getWorkerIndexForStore(store.getStoreName());
-                    sendChunkToWorker(chunk, workerIndex);
-                    out.writeObject(new Chunk("master", 1, "Το κατάστημα '" + store.getStoreName() + "' προστέθηκε."));
+                    allStores.put(Worker.nameKey(store.getStoreName()), store);
+                    if (!sendWrite(chunk, store.getStoreName())) {
+                        out.send(unavailable());
+                        return;
+                    }
+                    searchCache.invalidate(store.getLatitude(), store.getLongitude());
+                    out.send(new Chunk("master", 1, "Το κατάστημα '" + store.getStoreName() + "' προστέθηκε."));
+                }
+                case 14 -> { // Μαζική εισαγωγή: ένα Chunk ανά ομάδα καταστημάτων με τους ίδιους holders
+                    List<Store> stores = (List<Store>) chunk.getData();
+                    int inserted = sendStoreBatch(stores);
+                    searchCache.clear();
+                    Map<String, Integer> counts = new HashMap<>();
+                    counts.put("inserted", inserted);
+                    counts.put("failed", stores.size() - inserted);
+                    out.send(new Chunk("master", 14, counts));
                 }
                 case 2, 3, 4 -> { // Ενημερώσεις καταστημάτων
                     Map<String, Object> data = (Map<String, Object>) chunk.getData();
                     String storeName = (String) data.get("storeName");
-                    int workerIndex = getWorkerIndexForStore(storeName);
-                    sendChunkToWorker(chunk, workerIndex);
-                    out.writeObject(new Chunk("master", chunk.getTypeID(), "Η ενέργεια εκτελέστηκε."));
+                    if (!sendWrite(chunk, storeName)) {
+                        out.send(unavailable());
+                        return;
+                    }
+                    invalidateCache(storeName);
+                    out.send(new Chunk("master", chunk.getTypeID(), "Η ενέργεια εκτελέστηκε."));
                 }
                 case 5,6,7 -> {// Αίτημα στατιστικών πωλήσεων
-                    responsesReceived.put(segmentId, 0);
-                    partialProductSales.put(segmentId, new HashMap<>());
-                    for (int i = 0; i < numberOfWorkers; i++) {
-                        Chunk requestChunk = new Chunk("admin", chunk.getTypeID(), null);
-                        requestChunk.setSegmentID(segmentId);
-                        sendChunkToWorker(requestChunk, i);
-                    }
+                    sendReadToWorkers(new PendingRequest(segmentId, chunk.getTypeID(), out, allowPartialResults, null, trace),
+                            null, "admin");
                 }
 //                case 6, 7 -> { // Άλλα είδη συνολικών στατιστικών
 //                    for (int i = 0; i < numberOfWorkers; i++) {
@@ -124,129 +254,752 @@ public class Master {
 //                }
                 case 10 -> {// Αναζήτηση προϊόντων
                     println("Νέα αναζήτηση...");
-                    for (int i = 0; i < numberOfWorkers; i++) {
-                        Chunk searchChunk = new Chunk("client", 10, chunk.getData());
-                        searchChunk.setSegmentID(segmentId);
-                        sendChunkToWorker(searchChunk, i);
+                    Map<String, Object> filters = (Map<String, Object>) chunk.getData();
+                    Integer limit = (Integer) filters.get("limit");
+                    SearchOrder order;
+                    try {
+                        order = new SearchOrder(filters);
+                    } catch (IllegalArgumentException e) {
+                        out.send(new Chunk("master", -1, e.getMessage()));
+                        return;
                     }
+                    if (limit != null && limit < 1) {
+                        out.send(new Chunk("master", -1, "Το limit πρέπει να είναι θετικό."));
+                        return;
+                    }
+                    boolean allowPartial = (boolean) filters.getOrDefault("allowPartial", allowPartialResults);
+                    Map<String, Object> cacheKey = null;
+                    if (searchCache.isEnabled()) {
+                        // Με προσεγγιστικές επιτυχίες η αναζήτηση γίνεται από το κέντρο του κελιού, οπότε και η
+                        // ταξινόμηση/cursor· αλλιώς από τη θέση του χρήστη
+                        if (searchCache.isApproximate()) {
+                            filters = searchCache.searchFilters(filters);
+                            order = new SearchOrder(filters);
+                        }
+                        cacheKey = searchCache.keyFor(filters);
+                        Object cached = searchCache.get(cacheKey);
+                        if (cached != null) {
+                            out.send(new Chunk("master", 10, cached));
+                            return;
+                        }
+                    }
+                    PendingRequest request = new PendingRequest(segmentId, 10, out, allowPartial, order.new Merge(limit), trace);
+                    request.cacheAs(cacheKey, searchCache.epoch());
+                    sendReadToWorkers(request, filters, "client");
+                }
+                case 16 -> { // Λεπτομέρειες καταστήματος: από τον πρώτο διαθέσιμο holder του
+                    String storeName = (String) chunk.getData();
+                    if (storeName == null || !sendReadToHolder(new PendingRequest(segmentId, 16, out, false, null, trace),
+                            storeName)) {
+                        out.send(unavailable());
+                    }
+                }
+                case 17 -> { // Καλάθι: όλες οι γραμμές σε ένα αίτημα, ατομικά στον primary του καταστήματος
+                    CartRequest cart = (CartRequest) chunk.getData();
+                    if (cart.getLines().isEmpty()) {
+                        out.send(new Chunk("master", -1, "Το καλάθι είναι άδειο."));
+                        return;
+                    }
+                    if (!sendWriteAwaiting(new PendingRequest(segmentId, 17, out, false, null, trace), chunk,
+                            cart.getStoreName())) {
+                        out.send(unavailable());
+                        return;
+                    }
+                    invalidateCache(cart.getStoreName());   // Οι αναζητήσεις με includeProducts δείχνουν το απόθεμα
                 }
                 case 11 -> { //Αγορά προιόντος
                     BuyRequest req = (BuyRequest) chunk.getData();
-                    int workerIndex = Math.abs(req.getStoreName().hashCode()) % numberOfWorkers;
-                    sendChunkToWorker(chunk, workerIndex);
+                    if (!sendWrite(chunk, req.getStoreName())) {
+                        out.send(unavailable());
+                        return;
+                    }
 
-                    out.writeObject(new Chunk("master", 11, "Αγορά αιτήθηκε για " + req.getQuantity() + "x " + req.getProductName()));
+                    invalidateCache(req.getStoreName());
+                    out.send(new Chunk("master", 11, "Αγορά αιτήθηκε για " + req.getQuantity() + "x " + req.getProductName()));
                 }
 
                 case 12 -> { //Βαθμολόγηση καταστήματος
                     Map<String, Object> data = (Map<String, Object>) chunk.getData();
                     String storeName = (String) data.get("storeName");
-                    int workerIndex = Math.abs(storeName.hashCode()) % numberOfWorkers;
-                    sendChunkToWorker(chunk, workerIndex);
+                    if (!sendWrite(chunk, storeName)) {
+                        out.send(unavailable());
+                        return;
+                    }
 
-                    out.writeObject(new Chunk("master", 12, "Βαθμολογία κατοχυρώθηκε"));
+                    invalidateCache(storeName);
+                    out.send(new Chunk("master", 12, "Βαθμολογία κατοχυρώθηκε"));
+                }
+
+                case 20, 21 -> { // Προσθήκη/αφαίρεση Worker με μετακίνηση μόνο των καταστημάτων που επηρεάζονται
+                    Map<String, Object> data = (Map<String, Object>) chunk.getData();
+                    WorkerInfo worker = new WorkerInfo((String) data.get("host"), (int) data.get("port"), (int) data.get("weight"));
+                    int moved = changeMembership(worker, chunk.getTypeID() == 20);
+                    searchCache.clear();
+                    out.send(new Chunk("master", chunk.getTypeID(), moved < 0
+                            ? "Η αλλαγή ακυρώθηκε, Workers: " + ring.workers().size()
+                            : "Workers: " + ring.workers().size() + ", μετακινήθηκαν " + moved + " καταστήματα."));
                 }
 
-                default -> out.writeObject(new Chunk("master", -1, "Άγνωστη εντολή."));
+                case 30 -> // Μετρικές του Master και όλων των Workers
+                    sendReadToWorkers(new PendingRequest(segmentId, 30, out, true, null, trace), null, "admin");
+
+                default -> out.send(new Chunk("master", -1, "Άγνωστη εντολή."));
             }
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            long end = System.nanoTime();
+            Metrics.record("accept_to_dispatch", typeID, end - receivedNanos);
+            Tracer.span("master.dispatch", trace, start, end, "segmentId", chunk.getSegmentID());
         }
     }
     // Ακούει για απαντήσεις από τους Workers
     private static void listenForWorkerResponses() {
+        if (serverMode.equals("nio")) {
+            // Η συγχώνευση είναι γρήγορη, οπότε γίνεται κατευθείαν στο thread του selector
+            startNioServer("reducer", reducerPort, false, (connection, chunk) -> handleWorkerChunk(chunk));
+            return;
+        }
         new Thread(() -> {
             try (ServerSocket serverSocket = new ServerSocket(reducerPort)) {
                 println("Master listening for Worker responses on port " + reducerPort);
                 while (true) {
                     Socket socket = serverSocket.accept();
-                    new Thread(() -> handleWorkerResponse(socket)).start();
+                    if (!workerResponseExecutor.tryStartConnection(() -> handleWorkerResponse(socket))) {
+                        rejectConnection(socket, workerResponseExecutor);
+                    }
                 }
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }).start();
     }
-    // Επεξεργασία απάντησης από Worker
+    // Επεξεργασία απαντήσεων από Worker. Κάθε Worker κρατά ανοιχτή μία σύνδεση και στέλνει πολλά Chunks από αυτή.
     private static void handleWorkerResponse(Socket socket) {
-        try (ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) {
-            Chunk chunk = (Chunk) in.readObject();
-            int segmentId = chunk.getSegmentID();
+        try (socket; ChunkInputStream in = new ChunkInputStream(socket.getInputStream(), false)) {
+            while (true) {
+                Chunk chunk;
+                try {
+                    chunk = in.readChunk();
+                } catch (EOFException e) {
+                    return; // Ο Worker έκλεισε τη σύνδεση
+                }
+                handleWorkerChunk(chunk);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
 
-            switch (chunk.getTypeID()) {
-                case 5, 6, 7, 11, 12 -> { // Ενοποίηση μερικών αποτελεσμάτων πωλήσεω
-                    Map<String, Integer> part = (Map<String, Integer>) chunk.getData();
-                    synchronized (Master.class) {
-                        partialProductSales.putIfAbsent(segmentId, new HashMap<>());
-                        Map<String, Integer> current = partialProductSales.get(segmentId);
-                        for (var e : part.entrySet()) {
-                            current.merge(e.getKey(), e.getValue(), Integer::sum);
-                        }
-                        int received = responsesReceived.merge(segmentId, 1, Integer::sum);
-                        if (received == numberOfWorkers) {
-                            sendResultsToUser(segmentId, current, chunk.getTypeID());
-                        }
+    private static void handleWorkerChunk(Chunk chunk) {
+        int segmentId = chunk.getSegmentID();
+
+        switch (chunk.getTypeID()) {
+            case 5, 10, 16, 17, 30 -> { // Μερικά αποτελέσματα στατιστικών / αναζήτησης, λεπτομέρειες καταστήματος, καλάθι, μετρικές
+                PendingRequest request = pending.get(segmentId);
+                String workerId = chunk.getUserID();
+                long arrived = System.nanoTime();
+                if (request == null || !request.accept(workerId, chunk.getData())) {
+                    println("Καθυστερημένη απάντηση από " + workerId + " για το αίτημα " + segmentId + ", αγνοείται.");
+                    return;
+                }
+                long elapsed = arrived - request.startNanos;
+                Metrics.record("worker_reply", request.typeID, workerId, elapsed);
+                Tracer.span("master.worker_reply", request.trace, request.startNanos, arrived, "worker", workerId);
+                Tracer.span("master.merge", request.trace, arrived, System.nanoTime(), "worker", workerId);
+                if (request.typeID != 17) {     // Οι εγγραφές περιμένουν και το fsync, δεν μετράνε στο timeout αναγνώσεων
+                    healthOf(workerId).sample(elapsed / 1e6);
+                }
+                if (request.isComplete()) {
+                    complete(request);
+                }
+            }
+
+            case 15 -> { // Ο νέος holder έλαβε κατάστημα που μετακινήθηκε
+                Semaphore acks = migrationAcks.get(segmentId);
+                if (acks != null) {
+                    acks.release();
+                }
+            }
+
+            default -> println("Άγνωστο typeID από Worker: " + chunk.getTypeID());
+        }
+    }
+
+    // Η προθεσμία έληξε: όσοι δεν απάντησαν θεωρούνται αργοί και απαντάμε με ό,τι έχουμε
+    private static void expire(PendingRequest request) {
+        for (String workerId : request.awaitingIds()) {
+            healthOf(workerId).timedOut();
+        }
+        complete(request);
+    }
+
+    /*
+     * Στέλνει στον χρήστη το αποτέλεσμα του αιτήματος. Αν κάποιοι Workers δεν απάντησαν, το αποτέλεσμα είναι
+     * μερικό: στέλνεται με τη λίστα τους στο down του Chunk απάντησης, ή σφάλμα αν το αίτημα δεν δέχεται
+     * μερικά αποτελέσματα.
+     */
+    private static void complete(PendingRequest request) {
+        List<String> missing = request.finish();
+        if (missing == null) {
+            return;     // Το ολοκλήρωσε ήδη η απάντηση ή η προθεσμία
+        }
+        pending.remove(request.segmentId);
+        long waited = System.nanoTime();
+        Metrics.record("fanout_wait", request.typeID, waited - request.startNanos);
+        Tracer.span("master.fanout_wait", request.trace, request.startNanos, waited, "missing", missing);
+        Chunk response;
+        if (missing.isEmpty()) {
+            Object result = request.result();
+            Tracer.span("master.reduce", request.trace, waited, System.nanoTime());
+            if (request.cacheKey() != null) {
+                searchCache.put(request.cacheKey(), result, request.cacheEpoch());
+            }
+            response = result != null
+                    ? new Chunk("master", request.typeID, result)
+                    : new Chunk("master", -1, "Δεν βρέθηκε το κατάστημα.");
+        } else {
+            println("Το αίτημα " + request.segmentId + " ολοκληρώθηκε χωρίς απάντηση από " + missing);
+            if (request.typeID == 17) {
+                // Το καλάθι μπορεί να εκτελέστηκε χωρίς να φτάσει η απάντηση: δεν προτείνουμε απλή επανάληψη
+                response = new Chunk("master", -1, "Δεν επιβεβαιώθηκε εγκαίρως η παραγγελία από τον Worker "
+                        + missing + "· ελέγξτε το απόθεμα πριν την επαναλάβετε.");
+            } else {
+                response = request.allowPartial
+                        ? new Chunk("master", request.typeID, request.result())
+                        : new Chunk("master", -1, "Δεν απάντησαν εγκαίρως οι Workers " + missing + ", δοκιμάστε ξανά.");
+            }
+            response.setDown(missing);
+        }
+        response.setSegmentID(request.segmentId);
+        sendResultsToUser(request.out, response);
+    }
+
+    // Ακυρώνει τις αναζητήσεις γύρω από το κατάστημα· αν δεν το ξέρουμε, όλο το cache
+    private static void invalidateCache(String storeName) {
+        Store store = allStores.get(Worker.nameKey(storeName));
+        if (store != null) {
+            searchCache.invalidate(store.getLatitude(), store.getLongitude());
+        } else {
+            searchCache.clear();
+        }
+    }
+
+    private static void startCacheStatsReporter(int seconds) {
+        if (seconds <= 0 || !searchCache.isEnabled()) {
+            return;
+        }
+        Thread reporter = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(seconds * 1000L);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                System.out.println("[search-cache] " + searchCache);
+            }
+        }, "search-cache-stats");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    private static WorkerHealth healthOf(String workerId) {
+        return health.computeIfAbsent(workerId, id -> new WorkerHealth());
+    }
+
+    // Εγγραφή: πηγαίνει στον πρώτο διαθέσιμο Worker της preference list, που την προωθεί στα αντίγραφα.
+    // Αν δεν απαντά, σημειώνεται εκτός λειτουργίας και αναλαμβάνει ο επόμενος. false αν δεν απάντησε κανείς.
+    private static boolean sendWrite(Chunk chunk, String storeName) {
+        routingLock.readLock().lock();
+        try {
+            if (!sendWrite(chunk, ring.preferenceList(storeName, replicationFactor))) {
+                println("Κανένας διαθέσιμος Worker για το κατάστημα '" + storeName + "'");
+                return false;
+            }
+            return true;
+        } finally {
+            routingLock.readLock().unlock();
+        }
+    }
+
+    private static boolean sendWrite(Chunk chunk, List<WorkerInfo> holders) {
+        chunk.setHolders(ids(holders));
+        for (WorkerInfo w : holders) {
+            if (!available(w)) {
+                continue;
+            }
+            chunk.setDown(List.copyOf(down));
+            if (sendChunkToWorker(chunk, w)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Εγγραφή με απάντηση από τον Worker (καλάθι): όπως το sendWrite, αλλά το αίτημα καταχωρείται πριν σταλεί
+    // και ο primary απαντά μέσω του reducer. Περιμένουμε έως requestTimeoutMillis, αφού περιλαμβάνει και το fsync.
+    // false αν δεν υπάρχει διαθέσιμος holder (αν ο πίνακας αιτημάτων είναι γεμάτος, έχει ήδη απαντήσει το register).
+    private static boolean sendWriteAwaiting(PendingRequest request, Chunk chunk, String storeName) {
+        routingLock.readLock().lock();
+        try {
+            List<WorkerInfo> holders = ring.preferenceList(storeName, replicationFactor);
+            chunk.setHolders(ids(holders));
+            if (!register(request)) {
+                return true;
+            }
+            for (WorkerInfo w : holders) {
+                if (!available(w)) {
+                    continue;
+                }
+                request.await(List.of(w.id()));
+                chunk.setDown(List.copyOf(down));
+                if (sendChunkToWorker(chunk, w)) {
+                    request.setTimer(deadlines.schedule(() -> expire(request), requestTimeoutMillis, TimeUnit.MILLISECONDS));
+                    return true;
+                }
+                request.forget(w.id());     // Δοκιμάζουμε τον επόμενο holder
+            }
+            pending.remove(request.segmentId);
+        } finally {
+            routingLock.readLock().unlock();
+        }
+        println("Κανένας διαθέσιμος Worker για το κατάστημα '" + storeName + "'");
+        return false;
+    }
+
+    // Ομαδοποιεί τα καταστήματα ανά preference list και στέλνει κάθε ομάδα ως μία εγγραφή (typeID 14).
+    // Επιστρέφει πόσα καταστήματα στάλθηκαν.
+    private static int sendStoreBatch(List<Store> stores) {
+        routingLock.readLock().lock();
+        try {
+            return sendStoreBatchLocked(stores);
+        } finally {
+            routingLock.readLock().unlock();
+        }
+    }
+
+    private static int sendStoreBatchLocked(List<Store> stores) {
+        Map<List<String>, List<WorkerInfo>> holdersOf = new HashMap<>();
+        Map<List<String>, List<Store>> groups = new HashMap<>();
+        for (Store store : stores) {
+            List<WorkerInfo> holders = ring.preferenceList(store.getStoreName(), replicationFactor);
+            List<String> key = ids(holders);
+            holdersOf.putIfAbsent(key, holders);
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(store);
+        }
+        int inserted = 0;
+        for (Map.Entry<List<String>, List<Store>> group : groups.entrySet()) {
+            for (Store store : group.getValue()) {
+                allStores.put(Worker.nameKey(store.getStoreName()), store);
+            }
+            if (sendWrite(new Chunk("admin", 14, group.getValue()), holdersOf.get(group.getKey()))) {
+                inserted += group.getValue().size();
+            } else {
+                println("Κανένας διαθέσιμος Worker για " + group.getValue().size() + " καταστήματα (" + group.getKey() + ")");
+            }
+        }
+        return inserted;
+    }
+
+    // Ανάγνωση: πηγαίνει σε όλους τους διαθέσιμους Workers με την ίδια λίστα Workers εκτός λειτουργίας
+    // (μαζί με όσους ξανασυγχρονίζονται), ώστε να συμφωνούν ποιος απαντά για κάθε κατάστημα. Η προθεσμία
+    // είναι το προσαρμοστικό timeout του πιο αργού Worker, το πολύ requestTimeoutMillis.
+    private static void sendReadToWorkers(PendingRequest request, Object data, String userID) {
+        Set<String> unavailable = new HashSet<>(down);
+        unavailable.addAll(recovering);
+        List<String> downNow = List.copyOf(unavailable);
+        List<WorkerInfo> targets = new ArrayList<>();
+        long timeout = workerTimeoutMinMillis;
+        for (WorkerInfo w : ring.workers()) {
+            if (!downNow.contains(w.id())) {
+                targets.add(w);
+                timeout = Math.max(timeout, healthOf(w.id()).timeoutMillis(workerTimeoutMinMillis, requestTimeoutMillis));
+            }
+        }
+        request.await(ids(targets));
+        if (!register(request)) {
+            return;
+        }
+        for (WorkerInfo w : targets) {
+            Chunk requestChunk = new Chunk(userID, request.typeID, data);
+            requestChunk.setSegmentID(request.segmentId);
+            requestChunk.setDown(downNow);
+            requestChunk.setTrace(request.trace);
+            if (!sendChunkToWorker(requestChunk, w)) {
+                // Τα καταστήματα που εξυπηρετεί θα λείπουν από αυτό το αποτέλεσμα· τα επόμενα θα πάνε στα αντίγραφα
+                request.failed(w.id());
+            }
+        }
+        if (request.isComplete()) {
+            complete(request);
+        } else {
+            request.setTimer(deadlines.schedule(() -> expire(request), timeout, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    // Ανάγνωση ενός καταστήματος από τον πρώτο διαθέσιμο holder του· false αν δεν απάντησε κανείς
+    // (αν ο πίνακας αιτημάτων είναι γεμάτος, έχει ήδη απαντήσει το register)
+    private static boolean sendReadToHolder(PendingRequest request, String storeName) {
+        if (!register(request)) {
+            return true;
+        }
+        for (WorkerInfo w : ring.preferenceList(storeName, replicationFactor)) {
+            if (!available(w)) {
+                continue;
+            }
+            request.await(List.of(w.id()));
+            Chunk requestChunk = new Chunk("client", request.typeID, storeName);
+            requestChunk.setSegmentID(request.segmentId);
+            requestChunk.setTrace(request.trace);
+            if (sendChunkToWorker(requestChunk, w)) {
+                long timeout = healthOf(w.id()).timeoutMillis(workerTimeoutMinMillis, requestTimeoutMillis);
+                request.setTimer(deadlines.schedule(() -> expire(request), timeout, TimeUnit.MILLISECONDS));
+                return true;
+            }
+            request.forget(w.id());     // Δοκιμάζουμε τον επόμενο holder
+        }
+        pending.remove(request.segmentId);
+        return false;
+    }
+
+    // Καταχωρεί το αίτημα στα αιτήματα σε εξέλιξη· αν ο πίνακας είναι γεμάτος απαντά στον χρήστη με σφάλμα
+    // και επιστρέφει false
+    private static boolean register(PendingRequest request) {
+        if (pending.put(request.segmentId, request)) {
+            return true;
+        }
+        System.err.println("Απόρριψη αιτήματος " + request.segmentId + ": " + pending.size() + " αιτήματα σε εξέλιξη (όριο "
+                + pending.capacity() + ")");
+        request.finish();
+        sendResultsToUser(request.out, new Chunk("master", -1, "Ο Master είναι υπερφορτωμένος, δοκιμάστε ξανά."));
+        return false;
+    }
+
+    // Περιοδικά αφαιρεί όσα αιτήματα ξεπέρασαν το inFlightTtlMillis χωρίς να ολοκληρωθούν (π.χ. δεν ορίστηκε
+    // προθεσμία λόγω σφάλματος) και απαντά στον χρήστη με ό,τι έχουν
+    private static void startInFlightSweeper() {
+        deadlines.scheduleAtFixedRate(() -> {
+            try {
+                for (PendingRequest request : pending.expire()) {
+                    println("Το αίτημα " + request.segmentId + " έληξε στον πίνακα αιτημάτων σε εξέλιξη.");
+                    complete(request);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    private static Chunk unavailable() {
+        return new Chunk("master", -1, "Το κατάστημα δεν είναι διαθέσιμο αυτή τη στιγμή, δοκιμάστε ξανά.");
+    }
+
+    // Στέλνει ένα Chunk σε συγκεκριμένο Worker μέσω της μόνιμης σύνδεσης προς αυτόν.
+    // Αν αποτύχει, ο Worker σημειώνεται εκτός λειτουργίας.
+    private static boolean sendChunkToWorker(Chunk chunk, WorkerInfo w) {
+        try {
+            connectionTo(w).send(chunk);
+            println("Chunk sent to Worker " + w.id());
+            return true;
+        } catch (IOException e) {
+            System.err.println("Failed to send chunk to Worker " + w.id());
+            markDown(w);
+            return false;
+        }
+    }
+
+    private static void markDown(WorkerInfo w) {
+        if (down.add(w.id())) {
+            println("Ο Worker " + w.id() + " σημειώθηκε εκτός λειτουργίας.");
+        }
+    }
+
+    // Heartbeat (typeID 0) προς όλους τους Workers κάθε seconds δευτερόλεπτα. Εντοπίζει όσους έπεσαν ακόμη
+    // κι αν δεν τους στάλθηκε αίτημα, και ξανασυγχρονίζει όσους επανήλθαν.
+    private static void startHealthChecker(int seconds) {
+        if (seconds <= 0) {
+            return;
+        }
+        Thread checker = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(seconds * 1000L);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (WorkerInfo w : ring.workers()) {
+                    boolean wasDown = down.contains(w.id());
+                    try {
+                        connectionTo(w).send(new Chunk("master", 0, null));
+                    } catch (IOException e) {
+                        markDown(w);
+                        continue;
+                    }
+                    if (wasDown) {
+                        recover(w);
                     }
                 }
-                case 10 -> {// Ενοποίηση αποτελεσμάτων αναζήτησης
-                    List<Store> stores = (List<Store>) chunk.getData();
-                    synchronized (Master.class) {
-                        pendingResults.putIfAbsent(segmentId, new ArrayList<>());
-                        pendingResults.get(segmentId).addAll(stores);
-                        int received = responsesReceived.merge(segmentId, 1, Integer::sum);
-                        if (received == numberOfWorkers) {
-                            sendResultsToUser(segmentId, pendingResults.get(segmentId), 10);
-                            pendingResults.remove(segmentId);
-                        }
+            }
+        }, "health-checker");
+        checker.setDaemon(true);
+        checker.start();
+    }
+
+    /*
+     * Ο Worker επανήλθε, πιθανόν χωρίς δεδομένα ή με παλιά κατάσταση από το WAL του. Μπαίνει στους recovering:
+     * λαμβάνει ξανά τα αντίγραφα των εγγραφών αλλά δεν γίνεται primary ούτε απαντά σε αναγνώσεις. Ο πρώτος
+     * διαθέσιμος holder κάθε καταστήματός του του στέλνει την τρέχουσα κατάσταση (typeID 13 με keep) και οι
+     * εγγραφές που ακολουθούν φτάνουν μετά από αυτήν, στην ίδια σύνδεση. Βγαίνει από τους recovering όταν
+     * επιβεβαιώσει όλα τα καταστήματα (typeID 15, το πολύ migrationTimeoutMillis)· αλλιώς σημειώνεται ξανά
+     * εκτός λειτουργίας και η επαναφορά ξαναδοκιμάζεται στο επόμενο heartbeat.
+     */
+    private static void recover(WorkerInfo worker) {
+        membershipLock.lock();
+        try {
+            HashRing current = ring;
+            int segmentId = segmentIdCounter.incrementAndGet();
+            Semaphore acks = new Semaphore(0);
+            migrationAcks.put(segmentId, acks);
+            recovering.add(worker.id());
+            down.remove(worker.id());
+            int copied = 0;
+            int lost = 0;
+            try {
+                for (Store store : allStores.values()) {
+                    List<WorkerInfo> holders = current.preferenceList(store.getStoreName(), replicationFactor);
+                    if (!ids(holders).contains(worker.id())) {
+                        continue;
+                    }
+                    WorkerInfo source = firstAvailable(holders, worker.id());
+                    if (source == null) {
+                        lost++;     // Κανένα άλλο αντίγραφο (π.χ. replicationFactor=1)
+                        continue;
                     }
+                    if (sendMigrate(source, store.getStoreName(), List.of(worker.id()), ids(holders), true, segmentId)) {
+                        copied++;
+                    }
+                }
+                if (!awaitMigrations(acks, copied)) {
+                    markDown(worker);
+                    return;
                 }
+            } finally {
+                recovering.remove(worker.id());
+                migrationAcks.remove(segmentId);
+            }
+            println("Ο Worker " + worker.id() + " επανήλθε: ξαναστάλθηκαν " + copied + " καταστήματα"
+                    + (lost > 0 ? ", " + lost + " χωρίς αντίγραφο" : "") + ".");
+        } finally {
+            membershipLock.unlock();
+        }
+    }
 
-                default -> println("Άγνωστο typeID από Worker: " + chunk.getTypeID());
+    // Ο πρώτος holder που δεν είναι εκτός λειτουργίας ούτε ξανασυγχρονίζεται (εξαιρώντας τον except)
+    private static WorkerInfo firstAvailable(List<WorkerInfo> holders, String except) {
+        for (WorkerInfo w : holders) {
+            if (!w.id().equals(except) && available(w)) {
+                return w;
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+        }
+        return null;
+    }
+
+    // Αν ο Worker μπορεί να είναι primary ή να απαντά σε αναγνώσεις
+    private static boolean available(WorkerInfo w) {
+        return !down.contains(w.id()) && !recovering.contains(w.id());
+    }
+
+    // Οι νέοι holders επιβεβαιώνουν με typeID 15 και το ίδιο segmentId (0 = χωρίς αναμονή επιβεβαίωσης)
+    private static boolean sendMigrate(WorkerInfo source, String storeName, List<String> targets, List<String> holders,
+                                       boolean keep, int segmentId) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("storeName", storeName);
+        data.put("targets", targets);
+        data.put("holders", holders);
+        data.put("keep", keep);
+        Chunk migrate = new Chunk("master", 13, data);
+        migrate.setSegmentID(segmentId);
+        return sendChunkToWorker(migrate, source);
+    }
+
+    private static List<String> ids(List<WorkerInfo> workers) {
+        List<String> ids = new ArrayList<>(workers.size());
+        for (WorkerInfo w : workers) {
+            ids.add(w.id());
+        }
+        return ids;
+    }
+
+    private static PersistentConnection connectionTo(WorkerInfo w) {
+        synchronized (workerConnections) {
+            return workerConnections.computeIfAbsent(w.id(), id -> new PersistentConnection(w.host(), w.port()));
+        }
+    }
+
+    /*
+     * Προσθέτει (add = true) ή αφαιρεί Worker. Για κάθε κατάστημα που αλλάζουν οι holders του στο νέο ring,
+     * ο πρώτος διαθέσιμος παλιός holder το στέλνει (μαζί με απόθεμα, πωλήσεις και βαθμολογίες) στους νέους
+     * (typeID 13) κρατώντας το δικό του αντίγραφο. Αφού κάθε νέος holder επιβεβαιώσει ότι το έλαβε (typeID 15,
+     * το πολύ migrationTimeoutMillis), οι παλιοί holders είτε το κρατούν με τη νέα σειρά είτε το αφαιρούν και
+     * αλλάζει το ring· αν λείψει κάποια επιβεβαίωση η αλλαγή ακυρώνεται (επιστρέφει -1) και μένει το τρέχον
+     * ring, ώστε κανένα κατάστημα να μη μείνει χωρίς Worker. Τα υπόλοιπα καταστήματα δεν μετακινούνται. Με
+     * replicationFactor=1 ο Worker που αφαιρείται πρέπει να είναι ακόμη σε λειτουργία ώστε να παραδώσει τα
+     * καταστήματά του. Στο μεταξύ οι νέες εγγραφές περιμένουν (routingLock): όσες στάλθηκαν πριν
+     * φτάνουν στον παλιό holder πριν από τη μετακίνηση, στην ίδια σύνδεση, και περιλαμβάνονται στο
+     * κατάστημα που στέλνει, ενώ οι επόμενες πηγαίνουν στον νέο holder αφού το έχει λάβει.
+     */
+    private static int changeMembership(WorkerInfo worker, boolean add) {
+        membershipLock.lock();
+        try {
+            return changeMembershipLocked(worker, add);
+        } finally {
+            membershipLock.unlock();
         }
     }
-    // Στέλνει ένα Chunk σε συγκεκριμένο Worker
-    private static void sendChunkToWorker(Chunk chunk, int workerIndex) {
+
+    private static int changeMembershipLocked(WorkerInfo worker, boolean add) {
+        HashRing current = ring;
+        HashRing updated = add ? current.with(worker) : current.without(worker);
+        if (updated.isEmpty()) {
+            println("Δεν μπορεί να αφαιρεθεί ο τελευταίος Worker.");
+            return 0;
+        }
+
+        List<Migration> migrations = new ArrayList<>();
+        int segmentId = segmentIdCounter.incrementAndGet();
+        Semaphore acks = new Semaphore(0);
+        migrationAcks.put(segmentId, acks);
+        routingLock.writeLock().lock();
         try {
-            WorkerInfo w = workers.get(workerIndex);
-            try (Socket socket = new Socket(w.host(), w.port());
-                 ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream())) {
-                out.writeObject(chunk);
-                out.flush();
-                println("Chunk sent to Worker " + (workerIndex + 1));
+            int expected = 0;
+            boolean sent = true;
+            for (Store store : allStores.values()) {
+                List<WorkerInfo> fromHolders = current.preferenceList(store.getStoreName(), replicationFactor);
+                List<WorkerInfo> toHolders = updated.preferenceList(store.getStoreName(), replicationFactor);
+                List<String> from = ids(fromHolders);
+                List<String> to = ids(toHolders);
+                if (from.equals(to)) {
+                    continue;
+                }
+                List<WorkerInfo> targets = new ArrayList<>(toHolders);
+                targets.removeIf(w -> from.contains(w.id()));
+                WorkerInfo source = firstAvailable(fromHolders, null);
+                if (source == null) {
+                    println("Κανένας διαθέσιμος holder για το κατάστημα '" + store.getStoreName() + "'");
+                    continue;
+                }
+                Migration migration = new Migration(store.getStoreName(), fromHolders, source, targets, to);
+                if (sendMigrate(source, migration.storeName(), ids(targets), to, true, segmentId)) {
+                    expected += targets.size();
+                    migrations.add(migration);
+                } else {
+                    sent = false;
+                }
+            }
+
+            if (!sent || !awaitMigrations(acks, expected)) {
+                abortMigrations(migrations);
+                println("Η αλλαγή μελών ακυρώθηκε, το ring παραμένει με " + current.workers().size() + " Workers.");
+                return -1;
+            }
+            for (Migration migration : migrations) {
+                for (WorkerInfo holder : migration.fromHolders()) {
+                    if (!down.contains(holder.id())) {
+                        sendMigrate(holder, migration.storeName(), List.of(), migration.to(),
+                                migration.to().contains(holder.id()), 0);
+                    }
+                }
+            }
+            ring = updated;
+        } finally {
+            routingLock.writeLock().unlock();
+            migrationAcks.remove(segmentId);
+        }
+
+        if (!add) {
+            down.remove(worker.id());
+            PersistentConnection removed;
+            synchronized (workerConnections) {
+                removed = workerConnections.remove(worker.id());
+            }
+            if (removed != null) {
+                removed.close();
             }
-        } catch (IOException e) {
-            System.err.println("Failed to send chunk to Worker " + (workerIndex + 1));
-            e.printStackTrace();
         }
+        println("Νέο ring με " + updated.workers().size() + " Workers, μετακινήθηκαν " + migrations.size() + " καταστήματα.");
+        return migrations.size();
     }
-    // Υπολογίζει σε ποιον Worker θα ανατεθεί κατάστημα, με βάση το όνομά του
-    private static int getWorkerIndexForStore(String storeName) {
-        return Math.abs(storeName.hashCode()) % numberOfWorkers;
+
+    // Ένα κατάστημα που αντιγράφεται από τον source στους targets κατά την αλλαγή μελών
+    private record Migration(String storeName, List<WorkerInfo> fromHolders, WorkerInfo source,
+                             List<WorkerInfo> targets, List<String> to) {
+    }
+
+    // Ακύρωση της πρώτης φάσης: ο source ξαναπαίρνει τους παλιούς holders και τα αντίγραφα στους targets σβήνονται
+    private static void abortMigrations(List<Migration> migrations) {
+        for (Migration migration : migrations) {
+            sendMigrate(migration.source(), migration.storeName(), List.of(), ids(migration.fromHolders()), true, 0);
+            for (WorkerInfo target : migration.targets()) {
+                sendMigrate(target, migration.storeName(), List.of(), migration.to(), false, 0);
+            }
+        }
+    }
+
+    private static boolean awaitMigrations(Semaphore acks, int expected) {
+        try {
+            if (acks.tryAcquire(expected, migrationTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            System.err.println("Επιβεβαιώθηκαν " + acks.availablePermits() + " από " + expected
+                    + " μετακινήσεις σε " + migrationTimeoutMillis + " ms.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
     }
+
     // Στέλνει τα συγκεντρωτικά αποτελέσματα πίσω στον χρήστη
-    private static void sendResultsToUser(int segmentId, Object resultData, int typeID) {
+    private static void sendResultsToUser(ReplyChannel out, Chunk response) {
         try {
-            Socket userSocket = userSockets.get(segmentId);
-            ObjectOutputStream out = userOutputStreams.get(segmentId);
-            if (userSocket == null || userSocket.isClosed() || out == null) {
+            if (!out.isOpen()) {
                 println("Το socket του χρήστη είναι κλειστό, δεν μπορώ να στείλω απάντηση.");
                 return;
             }
-            Chunk response = new Chunk("master", typeID, resultData);
-            response.setSegmentID(segmentId);
-            out.writeObject(response);
-            out.flush();
-            println("Αποτελέσματα στάλθηκαν στον πελάτη για typeID " + typeID);
+            out.send(response);
+            println("Αποτελέσματα στάλθηκαν στον πελάτη για typeID " + response.getTypeID());
         } catch (IOException e) {
             System.err.println("Σφάλμα κατά την αποστολή των αποτελεσμάτων.");
             e.printStackTrace();
-        } finally {
-            userSockets.remove(segmentId);
-            userOutputStreams.remove(segmentId);
-            responsesReceived.remove(segmentId);
+        }
+    }
+
+    private static void startNioServer(String name, int port, boolean replies, NioServer.Handler handler) {
+        try {
+            new NioServer(name, port, replies, handler).start();
+            println("Master (nio) listening for " + name + " on port " + port);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Απαντά με σφάλμα σε αίτημα που δεν χωράει στον εκτελεστή
+    private static void rejectRequest(ReplyChannel channel, Chunk request, ServerExecutor executor) {
+        System.err.println("Απόρριψη αιτήματος, ο εκτελεστής είναι γεμάτος: " + executor);
+        try {
+            Chunk response = new Chunk("master", -1, "Ο Master είναι υπερφορτωμένος, δοκιμάστε ξανά.");
+            response.setSegmentID(request.getSegmentID());
+            channel.send(response);
+        } catch (IOException e) {
+            channel.close();
+        }
+    }
+
+    // Κλείνει σύνδεση που δεν χωράει στον εκτελεστή (backpressure προς τον αποστολέα)
+    private static void rejectConnection(Socket socket, ServerExecutor executor) {
+        System.err.println("Απόρριψη σύνδεσης, ο εκτελεστής είναι γεμάτος: " + executor);
+        try {
+            socket.close();
+        } catch (IOException ignored) {
         }
     }
 
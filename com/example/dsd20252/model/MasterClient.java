@@ -0,0 +1,153 @@
+package com.example.dsd20252.model;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Σύνδεση πελάτη με τον Master που κρατά πολλά αιτήματα σε εξέλιξη ταυτόχρονα (pipelining).
+ * Κάθε αίτημα παίρνει id (στο segmentID του Chunk), που ο Master επιστρέφει στην απάντηση· ένα thread
+ * διαβάζει τις απαντήσεις με όποια σειρά έρθουν και ολοκληρώνει το αντίστοιχο future.
+ * Μπορεί να χρησιμοποιείται από πολλά threads. Αν η σύνδεση κοπεί, όλα τα αιτήματα σε εξέλιξη
+ * αποτυγχάνουν με IOException και το αντικείμενο δεν ξαναχρησιμοποιείται.
+ */
+public class MasterClient implements Closeable {
+    static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+
+    private final Socket socket;
+    private final ChunkOutputStream out;
+    private final ChunkInputStream in;
+    private final Map<Integer, CompletableFuture<Chunk>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    private MasterClient(Socket socket) throws IOException {
+        this.socket = socket;
+        out = new ChunkOutputStream(socket.getOutputStream());
+        in = new ChunkInputStream(socket.getInputStream());
+        out.negotiate(in.getPeerVersion());
+    }
+
+    // Συνδέεται στον Master και ξεκινά το thread των απαντήσεων αφού κατασκευαστεί πλήρως το αντικείμενο
+    public static MasterClient connect(String host, int port) throws IOException {
+        Socket socket = new Socket(host, port);
+        MasterClient client;
+        try {
+            socket.setTcpNoDelay(true);
+            client = new MasterClient(socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        Thread reader = new Thread(client::readLoop, "master-client-" + socket.getLocalPort());
+        reader.setDaemon(true);
+        reader.start();
+        return client;
+    }
+
+    // Στέλνει το αίτημα χωρίς να περιμένει· το future ολοκληρώνεται με την απάντηση του Master
+    public CompletableFuture<Chunk> submit(Chunk request) {
+        CompletableFuture<Chunk> future = new CompletableFuture<>();
+        int id = newId();
+        request.setSegmentID(id);
+        pending.put(id, future);    // Πριν την αποστολή: η απάντηση μπορεί να έρθει πριν γυρίσει το writeChunk
+        if (closed) {
+            fail(new IOException("Η σύνδεση με τον Master έχει κλείσει"));
+            return future;
+        }
+        try {
+            out.writeChunk(request);
+        } catch (IOException e) {
+            pending.remove(id);
+            future.completeExceptionally(e);
+            close();
+        }
+        return future;
+    }
+
+    // Στέλνει το αίτημα και περιμένει την απάντηση
+    public Chunk call(Chunk request) throws IOException {
+        return call(request, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public Chunk call(Chunk request, long timeoutMillis) throws IOException {
+        CompletableFuture<Chunk> future = submit(request);
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            pending.remove(request.getSegmentID());
+            throw new IOException("Ο Master δεν απάντησε σε " + timeoutMillis + " ms");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.remove(request.getSegmentID());
+            throw new IOException("Διακοπή αναμονής απάντησης", e);
+        }
+    }
+
+    // Αιτήματα που περιμένουν απάντηση
+    public int inFlight() {
+        return pending.size();
+    }
+
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        fail(new IOException("Η σύνδεση με τον Master έκλεισε"));
+    }
+
+    // Το 0 δεν χρησιμοποιείται: είναι το segmentID των απαντήσεων σε πελάτες χωρίς id
+    private int newId() {
+        int id;
+        do {
+            id = nextId.incrementAndGet();
+        } while (id == 0 || pending.containsKey(id));
+        return id;
+    }
+
+    private void readLoop() {
+        try {
+            while (true) {
+                Chunk response = in.readChunk();
+                CompletableFuture<Chunk> future = pending.remove(response.getSegmentID());
+                if (future == null) {
+                    System.out.println("Απάντηση για άγνωστο αίτημα " + response.getSegmentID() + " (έληξε;), αγνοείται.");
+                    continue;
+                }
+                future.complete(response);
+            }
+        } catch (EOFException e) {
+            // Ο Master έκλεισε τη σύνδεση
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.println("Σφάλμα σύνδεσης με τον Master: " + e.getMessage());
+            }
+        }
+        close();
+    }
+
+    private void fail(IOException cause) {
+        List<Integer> ids = new ArrayList<>(pending.keySet());
+        for (Integer id : ids) {
+            CompletableFuture<Chunk> future = pending.remove(id);
+            if (future != null) {
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.dsd20252.model;
+
+import java.io.IOException;
+
+/**
+ * ReplyChannel που καταγράφει στα Metrics τον χρόνο εγγραφής της απάντησης, τον συνολικό χρόνο του
+ * αιτήματος από τη λήψη του, και αν η απάντηση ήταν σφάλμα ή μερικό αποτέλεσμα. Για τα αιτήματα του
+ * tracing καταγράφει και τα αντίστοιχα spans (master.reply και master.request για όλο το αίτημα).
+ * Βάζει στην απάντηση το id που έδωσε ο χρήστης στο αίτημα (segmentID), ώστε ένας πελάτης με πολλά
+ * αιτήματα σε εξέλιξη στην ίδια σύνδεση να αντιστοιχίζει τις απαντήσεις (MasterClient).
+ */
+class MeteredReplyChannel implements ReplyChannel {
+    private final ReplyChannel channel;
+    private final int typeID;
+    private final int correlationId;
+    private final long receivedNanos;
+    private final TraceContext trace;
+    private final long parentSpanId;    // Το span του χρήστη (0 αν το trace ξεκίνησε στον Master)
+
+    MeteredReplyChannel(ReplyChannel channel, int typeID, int correlationId, long receivedNanos, TraceContext trace,
+                        long parentSpanId) {
+        this.channel = channel;
+        this.typeID = typeID;
+        this.correlationId = correlationId;
+        this.receivedNanos = receivedNanos;
+        this.trace = trace;
+        this.parentSpanId = parentSpanId;
+    }
+
+    @Override
+    public void send(Chunk chunk) throws IOException {
+        long start = System.nanoTime();
+        chunk.setSegmentID(correlationId);
+        if (trace != null) {
+            chunk.setTrace(trace);      // Ο χρήστης βλέπει σε ποιο trace ανήκει η απάντηση
+        }
+        channel.send(chunk);
+        long end = System.nanoTime();
+        Metrics.record("reply_write", typeID, end - start);
+        Metrics.record("total", typeID, end - receivedNanos);
+        Tracer.span("master.reply", trace, start, end);
+        Tracer.requestSpan("master.request", trace, parentSpanId, receivedNanos, end,
+                "typeID", typeID, "reply", chunk.getTypeID());
+        if (chunk.getTypeID() == -1) {
+            Metrics.count("dsd_errors_total", typeID);
+        } else if (chunk.getDown() != null && !chunk.getDown().isEmpty()) {
+            Metrics.count("dsd_partial_total", typeID);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() {
+        channel.close();
+    }
+}
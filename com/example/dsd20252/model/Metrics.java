@@ -0,0 +1,142 @@
+package com.example.dsd20252.model;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Μετρικές της διεργασίας (Master ή Worker): μετρητές και χρόνοι ανά typeID και στάδιο επεξεργασίας,
+ * και τιμές της τρέχουσας κατάστασης (gauges: ανοιχτές συνδέσεις, αιτήματα σε εξέλιξη, εκτελεστές).
+ * Στάδια στον Master:
+ *   queue               από τη λήψη του αιτήματος μέχρι να ξεκινήσει η εκτέλεσή του (αναμονή στον εκτελεστή)
+ *   accept_to_dispatch  από τη λήψη μέχρι να σταλεί στους Workers (στις εγγραφές και στα hits του cache
+ *                       περιλαμβάνει και την απάντηση)
+ *   worker_reply        από την αποστολή μέχρι την απάντηση κάθε Worker (με ετικέτα worker)
+ *   fanout_wait         από την αποστολή μέχρι να απαντήσουν όλοι οι Workers ή να λήξει η προθεσμία
+ *   reply_write         εγγραφή της απάντησης στον χρήστη
+ *   total               από τη λήψη μέχρι την απάντηση
+ * Στάδια στον Worker: queue, lock_wait (αναμονή για τα locks των εγγραφών) και processing.
+ * Το render δίνει κείμενο στη μορφή του Prometheus (text exposition), που διαβάζεται από το metricsPort
+ * (http://host:metricsPort/metrics) και, για όλο το cluster, από τον Master με το typeID 30.
+ */
+class Metrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    // Μετρική με τις ετικέτες της, π.χ. ("dsd_requests_total", "typeID=\"10\"")
+    private record Key(String name, String labels) {
+    }
+
+    private static final Comparator<Key> ORDER = Comparator.comparing(Key::name).thenComparing(Key::labels);
+
+    private static volatile String instance = "";
+    private static final Map<Key, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final Map<Key, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private static final Map<Key, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    // instance: η ετικέτα της διεργασίας ("master" ή host:port του Worker)· port 0 = χωρίς HTTP endpoint
+    static void init(String instanceName, int port) {
+        instance = instanceName;
+        if (port > 0) {
+            startHttpServer(port);
+        }
+    }
+
+    static void count(String name, int typeID) {
+        counters.computeIfAbsent(new Key(name, typeLabel(typeID)), k -> new LongAdder()).increment();
+    }
+
+    static void record(String stage, int typeID, long nanos) {
+        record(new Key("dsd_latency_ms", "stage=\"" + stage + "\"," + typeLabel(typeID)), nanos);
+    }
+
+    static void record(String stage, int typeID, String worker, long nanos) {
+        record(new Key("dsd_latency_ms", "stage=\"" + stage + "\"," + typeLabel(typeID) + ",worker=\"" + worker + "\""), nanos);
+    }
+
+    private static void record(Key key, long nanos) {
+        LatencyHistogram histogram = latencies.computeIfAbsent(key, k -> new LatencyHistogram());
+        synchronized (histogram) {
+            histogram.record(nanos / 1000);
+        }
+    }
+
+    static void gauge(String name, String labels, LongSupplier value) {
+        gauges.put(new Key(name, labels), value);
+    }
+
+    private static String typeLabel(int typeID) {
+        return "typeID=\"" + typeID + "\"";
+    }
+
+    static String render() {
+        StringBuilder out = new StringBuilder();
+        String self = "instance=\"" + instance + "\"";
+
+        List<Key> keys = new ArrayList<>(counters.keySet());
+        keys.sort(ORDER);
+        for (Key key : keys) {
+            line(out, key.name(), self, key.labels(), counters.get(key).sum());
+        }
+
+        keys = new ArrayList<>(latencies.keySet());
+        keys.sort(ORDER);
+        for (Key key : keys) {
+            LatencyHistogram snapshot = new LatencyHistogram();
+            LatencyHistogram histogram = latencies.get(key);
+            synchronized (histogram) {
+                snapshot.add(histogram);
+            }
+            for (double q : QUANTILES) {
+                line(out, key.name(), self, key.labels() + ",quantile=\"" + q + "\"", snapshot.percentile(q * 100) / 1000.0);
+            }
+            line(out, key.name() + "_max", self, key.labels(), snapshot.max() / 1000.0);
+            line(out, key.name() + "_sum", self, key.labels(), snapshot.mean() * snapshot.count() / 1000.0);
+            line(out, key.name() + "_count", self, key.labels(), snapshot.count());
+        }
+
+        keys = new ArrayList<>(gauges.keySet());
+        keys.sort(ORDER);
+        for (Key key : keys) {
+            line(out, key.name(), self, key.labels(), gauges.get(key).getAsLong());
+        }
+        return out.toString();
+    }
+
+    private static void line(StringBuilder out, String name, String self, String labels, long value) {
+        out.append(name).append('{').append(self).append(labels.isEmpty() ? "" : ",").append(labels).append("} ")
+                .append(value).append('\n');
+    }
+
+    private static void line(StringBuilder out, String name, String self, String labels, double value) {
+        out.append(name).append('{').append(self).append(labels.isEmpty() ? "" : ",").append(labels).append("} ")
+                .append(String.format(Locale.ROOT, "%.3f", value)).append('\n');
+    }
+
+    private static void startHttpServer(int port) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+            server.createContext("/metrics", exchange -> {
+                byte[] body = render().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            System.out.println("Metrics στο http://localhost:" + port + "/metrics");
+        } catch (IOException e) {
+            System.err.println("Δεν ξεκίνησε το metrics endpoint στο port " + port + ": " + e.getMessage());
+        }
+    }
+}
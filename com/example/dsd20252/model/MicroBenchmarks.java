@@ -0,0 +1,336 @@
+package com.example.dsd20252.model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Pattern;
+
+/**
+ * Microbenchmarks για τα σημεία του Worker και του Master που εκτελούνται σε κάθε αίτημα, πάνω σε
+ * συνθετικό κατάλογο (ίδιος με της LoadGenerator) μεγέθους stores. Τρέχουν μέσα στο ίδιο JVM χωρίς
+ * δίκτυο: ο Worker γεμίζει μέσω του handleWrite, όπως όταν του στέλνει ο Master.
+ * Κάθε benchmark τρέχει warmupIterations επαναλήψεις για να ζεσταθεί ο JIT και μετά iterations
+ * επαναλήψεις των iterationMillis, και τυπώνεται ο μέσος χρόνος ανά λειτουργία με την τυπική απόκλιση
+ * μεταξύ των επαναλήψεων. Τα αποτελέσματα κάθε λειτουργίας γράφονται σε ένα static πεδίο ώστε ο JIT
+ * να μην μπορεί να αφαιρέσει τον κώδικα ως νεκρό.
+ * Με output γράφεται CSV· με baseline (ένα προηγούμενο CSV) τυπώνεται και η μεταβολή ανά benchmark,
+ * για σύγκριση πριν/μετά από μια αλλαγή. Τα ορίσματα της γραμμής εντολών (regex) επιλέγουν benchmarks.
+ * Οι εκτυπώσεις του Worker κατά τη μέτρηση απενεργοποιούνται: μετράμε τον κώδικα, όχι την κονσόλα.
+ */
+public class MicroBenchmarks {
+    private static int warmupIterations;
+    private static int iterations;
+    private static long iterationNanos;
+    private static int threads;
+
+    private static PrintStream console;
+    static Object sink;     // Blackhole
+
+    private interface Op {
+        Object run(int i) throws Exception;
+    }
+
+    private record Benchmark(String name, int threads, Op op) {
+    }
+
+    private record Result(String name, int threads, double nsPerOp, double stddev, double opsPerSecond) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties prop = new Properties();
+        Path configFile = Path.of(System.getProperty("benchmark.config", "benchmark.config"));
+        if (Files.exists(configFile)) {
+            try (InputStream in = Files.newInputStream(configFile)) {
+                prop.load(in);
+            }
+        }
+        int storeCount = Integer.parseInt(prop.getProperty("stores", "10000").trim());
+        int productsPerStore = Integer.parseInt(prop.getProperty("productsPerStore", "10").trim());
+        double spreadKm = Double.parseDouble(prop.getProperty("spreadKm", "10").trim());
+        warmupIterations = Integer.parseInt(prop.getProperty("warmupIterations", "3").trim());
+        iterations = Integer.parseInt(prop.getProperty("iterations", "5").trim());
+        iterationNanos = Long.parseLong(prop.getProperty("iterationMillis", "1000").trim()) * 1_000_000;
+        threads = Integer.parseInt(prop.getProperty("threads", "4").trim());
+        String include = args.length > 0 ? String.join("|", args) : prop.getProperty("include", "").trim();
+        String output = prop.getProperty("output", "").trim();
+        String baseline = prop.getProperty("baseline", "").trim();
+
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        console.printf("Κατάλογος: %d καταστήματα x %d προϊόντα, %d επαναλήψεις x %d ms (+%d προθέρμανση), threads=%d%n",
+                storeCount, productsPerStore, iterations, iterationNanos / 1_000_000, warmupIterations, threads);
+        List<Store> stores = LoadGenerator.syntheticStores(storeCount, 37.98, 23.73, spreadKm, productsPerStore, 42);
+        List<Benchmark> benchmarks = benchmarks(stores);
+
+        Pattern filter = include.isEmpty() ? null : Pattern.compile(include);
+        Map<String, Double> before = baseline.isEmpty() ? Map.of() : readBaseline(Path.of(baseline));
+        List<Result> results = new ArrayList<>();
+        console.printf("%n%-22s %7s %12s %9s %14s%n", "benchmark", "threads", "ns/op", "±", "ops/s");
+        for (Benchmark b : benchmarks) {
+            if (filter != null && !filter.matcher(b.name()).find()) {
+                continue;
+            }
+            Result r = b.threads() == 1 ? measure(b) : measureConcurrent(b);
+            results.add(r);
+            Double old = before.get(r.name());
+            console.printf("%-22s %7d %12.1f %8.1f%% %14.0f%s%n", r.name(), r.threads(), r.nsPerOp(),
+                    100 * r.stddev() / r.nsPerOp(), r.opsPerSecond(),
+                    old == null ? "" : String.format("   %+.1f%% έναντι baseline", 100 * (r.nsPerOp() - old) / old));
+        }
+        if (!output.isEmpty()) {
+            writeResults(Path.of(output), results);
+            console.println("Αποτελέσματα: " + output);
+        }
+        System.setOut(console);
+    }
+
+    // ---------------------------------------------------------------- benchmarks
+
+    private static List<Benchmark> benchmarks(List<Store> stores) throws Exception {
+        Random random = new Random(7);
+        // Αρκετό απόθεμα για όλες τις αγορές των benchmarks και κάποιες πωλήσεις για τα στατιστικά
+        for (Store store : stores) {
+            for (Product p : store.getProducts()) {
+                p.setAvailableAmount(Integer.MAX_VALUE / 2);
+                p.setSoldAmount(random.nextInt(100));
+            }
+        }
+        for (int from = 0; from < stores.size(); from += 500) {
+            Worker.handleWrite(new Chunk("admin", 14, new ArrayList<>(stores.subList(from, Math.min(stores.size(), from + 500)))));
+        }
+
+        // Σημεία αναζήτησης κοντά σε τυχαία καταστήματα
+        int points = 1024;
+        List<Map<String, Object>> paged = new ArrayList<>(points);
+        List<Map<String, Object>> unpaged = new ArrayList<>(points);
+        double[] lat = new double[points], lon = new double[points];
+        for (int i = 0; i < points; i++) {
+            Store store = stores.get(random.nextInt(stores.size()));
+            lat[i] = store.getLatitude() + (random.nextDouble() - 0.5) * 0.02;
+            lon[i] = store.getLongitude() + (random.nextDouble() - 0.5) * 0.02;
+            Map<String, Object> filters = new HashMap<>();
+            filters.put("latitude", lat[i]);
+            filters.put("longitude", lon[i]);
+            unpaged.add(new HashMap<>(filters));
+            filters.put("limit", 10);
+            paged.add(filters);
+        }
+        int mask = points - 1;
+
+        // Απαντήσεις τριών Workers για τη συγχώνευση στον Master
+        List<List<List<SearchOrder.Ranked>>> replies = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            List<List<SearchOrder.Ranked>> perWorker = new ArrayList<>();
+            for (int w = 0; w < 3; w++) {
+                perWorker.add(Worker.search(paged.get(i * 3 + w), Set.of()));
+            }
+            replies.add(perWorker);
+        }
+
+        // Μηνύματα για το ChunkCodec
+        Chunk filtersChunk = new Chunk("client", 10, paged.get(0));
+        Chunk rankedChunk = new Chunk("localhost:20001", 10, Worker.search(paged.get(0), Set.of()));
+        Map<String, Object> page = new HashMap<>();
+        List<Object> summaries = new ArrayList<>();
+        for (SearchOrder.Ranked r : Worker.search(paged.get(0), Set.of())) {
+            summaries.add(r.result());
+        }
+        page.put("stores", summaries);
+        page.put("nextCursor", "distance;1.0;1.0;load store 1");
+        Chunk pageChunk = new Chunk("master", 10, page);
+        Chunk storeChunk = new Chunk("admin", 1, stores.get(0));
+
+        // Το store.json ενός καταστήματος, σε αρχείο και στη μνήμη
+        byte[] json = toJson(stores.get(1)).getBytes(StandardCharsets.UTF_8);
+        Path folder = Files.createTempDirectory("bench-store");
+        Files.write(folder.resolve("store.json"), json);
+        folder.toFile().deleteOnExit();
+        folder.resolve("store.json").toFile().deleteOnExit();
+
+        String hotStore = stores.get(0).getStoreName();
+        int products = stores.get(0).getProducts().size();
+
+        return List.of(
+                new Benchmark("distance", 1, i -> SpatialIndex.distance(lat[i & mask], lon[i & mask],
+                        lat[(i + 1) & mask], lon[(i + 1) & mask])),
+                new Benchmark("search.limit10", 1, i -> Worker.search(paged.get(i & mask), Set.of())),
+                new Benchmark("search.unpaged", 1, i -> Worker.search(unpaged.get(i & mask), Set.of())),
+                new Benchmark("stats.byProduct", 1, i -> Worker.sales(5, Set.of())),
+                new Benchmark("stats.byStoreType", 1, i -> Worker.sales(6, Set.of())),
+                new Benchmark("stats.byCategory", 1, i -> Worker.sales(7, Set.of())),
+                new Benchmark("parse.storeJson", 1, i -> StoreParser.parseStoreFromJson(folder.toString())),
+                new Benchmark("parse.bytes", 1, i -> StoreParser.parseStores(new ByteArrayInputStream(json), s -> sink = s)),
+                new Benchmark("codec.filters", 1, i -> roundTrip(filtersChunk)),
+                new Benchmark("codec.ranked10", 1, i -> roundTrip(rankedChunk)),
+                new Benchmark("codec.page10", 1, i -> roundTrip(pageChunk)),
+                new Benchmark("codec.store", 1, i -> roundTrip(storeChunk)),
+                new Benchmark("master.merge3x10", 1, i -> merge(paged.get(0), replies.get(i & 63))),
+                new Benchmark("buy.hotStore", threads, i -> buy(hotStore, "Product " + (i % products))),
+                new Benchmark("buy.spread", threads, i -> buy(stores.get((i * 31) % stores.size()).getStoreName(),
+                        "Product " + (i % products))));
+    }
+
+    private static Object buy(String storeName, String productName) {
+        Worker.handleWrite(new Chunk("client", 11, new BuyRequest(storeName, productName, 1)));
+        return storeName;
+    }
+
+    // Κωδικοποίηση και αποκωδικοποίηση ενός frame
+    private static Chunk roundTrip(Chunk chunk) throws IOException {
+        ByteBuffer frame = ChunkCodec.encodeFrame(chunk, ChunkCodec.VERSION);
+        frame.position(4);
+        return ChunkCodec.readChunk(frame, ChunkCodec.VERSION);
+    }
+
+    // Όπως ο Master με τις απαντήσεις των Workers για μια αναζήτηση (typeID 10)
+    private static Object merge(Map<String, Object> filters, List<List<SearchOrder.Ranked>> replies) {
+        PendingRequest request = new PendingRequest(1, 10, null, true, new SearchOrder(filters).new Merge(10), null);
+        request.await(List.of("w0", "w1", "w2"));
+        for (int w = 0; w < replies.size(); w++) {
+            request.accept("w" + w, replies.get(w));
+        }
+        request.finish();
+        return request.result();
+    }
+
+    private static String toJson(Store store) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"StoreName\": \"").append(store.getStoreName())
+                .append("\", \"Latitude\": ").append(store.getLatitude())
+                .append(", \"Longitude\": ").append(store.getLongitude())
+                .append(", \"FoodCategory\": \"").append(store.getFoodCategory())
+                .append("\", \"Stars\": ").append(store.getStars())
+                .append(", \"NoOfVotes\": ").append(store.getNoOfVotes())
+                .append(", \"StoreLogo\": \"").append(store.getStoreLogo())
+                .append("\", \"Products\": [");
+        List<Product> products = store.getProducts();
+        for (int i = 0; i < products.size(); i++) {
+            Product p = products.get(i);
+            sb.append(i == 0 ? "" : ", ").append("{\"ProductName\": \"").append(p.getProductName())
+                    .append("\", \"ProductType\": \"").append(p.getProductType())
+                    .append("\", \"Available Amount\": ").append(p.getInitialAmount())
+                    .append(", \"Price\": ").append(p.getPrice()).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    // ---------------------------------------------------------------- μέτρηση
+
+    private static Result measure(Benchmark b) throws Exception {
+        Op op = b.op();
+        // Ομάδες λειτουργιών ώστε ο έλεγχος του χρόνου να μη μετράει στις πολύ γρήγορες (τουλάχιστον ~10 μs ανά ομάδα)
+        int batch = 1;
+        int i = 0;
+        while (batch < (1 << 20)) {
+            long start = System.nanoTime();
+            for (int k = 0; k < batch; k++) {
+                sink = op.run(i++);
+            }
+            if (System.nanoTime() - start >= 10_000) {
+                break;
+            }
+            batch *= 2;
+        }
+
+        double[] nsPerOp = new double[iterations];
+        for (int it = -warmupIterations; it < iterations; it++) {
+            long ops = 0;
+            long start = System.nanoTime();
+            long deadline = start + iterationNanos;
+            long now;
+            do {
+                for (int k = 0; k < batch; k++) {
+                    sink = op.run(i++);
+                }
+                ops += batch;
+                now = System.nanoTime();
+            } while (now < deadline);
+            if (it >= 0) {
+                nsPerOp[it] = (double) (now - start) / ops;
+            }
+        }
+        return result(b, nsPerOp);
+    }
+
+    // threads threads εκτελούν ταυτόχρονα την ίδια λειτουργία· ns/op είναι ο χρόνος ανά λειτουργία κάθε thread
+    private static Result measureConcurrent(Benchmark b) throws Exception {
+        double[] nsPerOp = new double[iterations];
+        for (int it = -warmupIterations; it < iterations; it++) {
+            long[] ops = new long[b.threads()];
+            CountDownLatch ready = new CountDownLatch(b.threads());
+            CountDownLatch go = new CountDownLatch(1);
+            Thread[] runners = new Thread[b.threads()];
+            long[] elapsed = new long[b.threads()];
+            for (int t = 0; t < b.threads(); t++) {
+                int id = t;
+                runners[t] = Thread.ofPlatform().name("bench-", t).start(() -> {
+                    int i = id * 1_000_003;
+                    ready.countDown();
+                    try {
+                        go.await();
+                        long start = System.nanoTime();
+                        long deadline = start + iterationNanos;
+                        long now;
+                        do {
+                            for (int k = 0; k < 64; k++) {
+                                sink = b.op().run(i++);
+                            }
+                            ops[id] += 64;
+                            now = System.nanoTime();
+                        } while (now < deadline);
+                        elapsed[id] = now - start;
+                    } catch (Exception e) {
+                        e.printStackTrace(console);
+                    }
+                });
+            }
+            ready.await();
+            go.countDown();
+            long totalOps = 0;
+            long totalNanos = 0;
+            for (int t = 0; t < b.threads(); t++) {
+                runners[t].join();
+                totalOps += ops[t];
+                totalNanos += elapsed[t];
+            }
+            if (it >= 0) {
+                nsPerOp[it] = (double) totalNanos / totalOps;
+            }
+        }
+        return result(b, nsPerOp);
+    }
+
+    private static Result result(Benchmark b, double[] nsPerOp) {
+        double mean = Arrays.stream(nsPerOp).average().orElse(0);
+        double variance = Arrays.stream(nsPerOp).map(x -> (x - mean) * (x - mean)).sum() / Math.max(1, nsPerOp.length - 1);
+        return new Result(b.name(), b.threads(), mean, Math.sqrt(variance), b.threads() * 1e9 / mean);
+    }
+
+    // ---------------------------------------------------------------- CSV
+
+    private static void writeResults(Path file, List<Result> results) throws IOException {
+        StringBuilder csv = new StringBuilder("benchmark,threads,ns_per_op,stddev,ops_per_sec\n");
+        for (Result r : results) {
+            csv.append(String.format(Locale.ROOT, "%s,%d,%.2f,%.2f,%.0f%n", r.name(), r.threads(), r.nsPerOp(),
+                    r.stddev(), r.opsPerSecond()));
+        }
+        Files.writeString(file, csv);
+    }
+
+    private static Map<String, Double> readBaseline(Path file) throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        List<String> lines = Files.readAllLines(file);
+        for (String line : lines.subList(1, lines.size())) {
+            String[] cols = line.split(",");
+            if (cols.length >= 3) {
+                baseline.put(cols[0], Double.parseDouble(cols[2]));
+            }
+        }
+        return baseline;
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.dsd20252.model;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Μη-blocking server (NIO Selector) για τα ports του Master.
+ * Όλες οι συνδέσεις εξυπηρετούνται από ένα μόνο thread: μια σύνδεση που περιμένει απάντηση κοστίζει
+ * μόνο τους buffers της και όχι ένα thread. Κάθε ολοκληρωμένο frame αποκωδικοποιείται και δίνεται
+ * στον Handler μαζί με τη σύνδεση, η οποία λειτουργεί ως ReplyChannel για την απάντηση.
+ */
+class NioServer {
+    interface Handler {
+        // Καλείται στο thread του selector· ό,τι αργό πρέπει να μεταφερθεί σε άλλο thread
+        void onChunk(Connection connection, Chunk chunk);
+    }
+
+    private static final int HEADER_SIZE = 5;   // MAGIC + έκδοση
+
+    private final String name;
+    private final int port;
+    private final boolean replies;      // false αν ο Handler δεν απαντά ποτέ (βλ. ChunkCodec.negotiate)
+    private final Handler handler;
+    private Selector selector;
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+
+    NioServer(String name, int port, boolean replies, Handler handler) {
+        this.name = name;
+        this.port = port;
+        this.replies = replies;
+        this.handler = handler;
+    }
+
+    void start() throws IOException {
+        selector = Selector.open();
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        Metrics.gauge("dsd_open_connections", "server=\"" + name + "\"", openConnections::get);
+
+        Thread loop = new Thread(() -> {
+            try {
+                run(server);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "nio-" + name);
+        loop.start();
+    }
+
+    private void run(ServerSocketChannel server) throws IOException {
+        while (true) {
+            selector.select();
+
+            // Συνδέσεις που έγραψαν από άλλο thread και δεν χώρεσαν όλα τα bytes στο socket
+            Connection pending;
+            while ((pending = pendingWrites.poll()) != null) {
+                pending.enableWriteInterest();
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                try {
+                    if (key.isAcceptable()) {
+                        accept(server);
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        ((Connection) key.attachment()).read();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        ((Connection) key.attachment()).flush();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    if (e instanceof RuntimeException && !(e instanceof CancelledKeyException)) {
+                        e.printStackTrace();
+                    }
+                    Object attachment = key.attachment();
+                    if (attachment instanceof Connection connection) {
+                        connection.close();
+                    }
+                }
+            }
+        }
+    }
+
+    private void accept(ServerSocketChannel server) throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel);
+        openConnections.incrementAndGet();
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        connection.enqueue(ChunkCodec.encodeHeader());
+    }
+
+    /**
+     * Μία σύνδεση πελάτη (ή Worker). Τα send() μπορούν να γίνουν από οποιοδήποτε thread:
+     * ό,τι δεν γράφεται αμέσως μπαίνει σε ουρά και το στέλνει ο selector όταν το socket είναι έτοιμο.
+     */
+    class Connection implements ReplyChannel {
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private ByteBuffer readBuffer = ByteBuffer.allocate(4096);
+        private final ArrayDeque<ByteBuffer> writeQueue = new ArrayDeque<>();
+        private int version = -1;   // -1 μέχρι να έρθει η κεφαλίδα του πελάτη
+        private final AtomicBoolean closed = new AtomicBoolean();   // close() καλείται από τον selector και από άλλα threads
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private void read() throws IOException {
+            int n = channel.read(readBuffer);
+            if (n == -1) {
+                close();
+                return;
+            }
+            readBuffer.flip();
+            try {
+                if (version < 0) {
+                    if (readBuffer.remaining() < HEADER_SIZE) {
+                        return;
+                    }
+                    if (readBuffer.getInt() != ChunkCodec.MAGIC) {
+                        throw new IOException("Άγνωστο πρωτόκολλο");
+                    }
+                    version = ChunkCodec.negotiate(readBuffer.get() & 0xFF, replies);
+                }
+                while (readBuffer.remaining() >= 4) {
+                    int length = readBuffer.getInt(readBuffer.position());
+                    if (length <= 0 || length > ChunkCodec.MAX_FRAME_SIZE) {
+                        throw new IOException("Μη έγκυρο μήκος frame: " + length);
+                    }
+                    if (readBuffer.remaining() < 4 + length) {
+                        ensureCapacity(4 + length);
+                        return;
+                    }
+                    readBuffer.position(readBuffer.position() + 4);
+                    ByteBuffer frame = readBuffer.slice(readBuffer.position(), length);
+                    readBuffer.position(readBuffer.position() + length);
+                    handler.onChunk(this, ChunkCodec.readChunk(frame, version));
+                }
+            } finally {
+                readBuffer.compact();
+            }
+        }
+
+        // Μεγαλώνει τον buffer ώστε να χωράει ένα frame (καλείται με τον buffer σε κατάσταση ανάγνωσης)
+        private void ensureCapacity(int needed) {
+            if (readBuffer.capacity() < needed) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(needed, readBuffer.capacity() * 2));
+                bigger.put(readBuffer);
+                bigger.flip();
+                readBuffer = bigger;
+            }
+        }
+
+        @Override
+        public void send(Chunk chunk) throws IOException {
+            if (!channel.isOpen()) {
+                throw new ClosedChannelException();
+            }
+            enqueue(ChunkCodec.encodeFrame(chunk, Math.max(version, ChunkCodec.MIN_VERSION)));
+        }
+
+        private void enqueue(ByteBuffer bytes) throws IOException {
+            boolean needsSelector;
+            synchronized (writeQueue) {
+                if (writeQueue.isEmpty()) {
+                    channel.write(bytes);
+                }
+                if (!bytes.hasRemaining()) {
+                    return;
+                }
+                needsSelector = writeQueue.isEmpty();
+                writeQueue.add(bytes);
+            }
+            if (needsSelector) {
+                pendingWrites.add(this);
+                selector.wakeup();
+            }
+        }
+
+        private void enableWriteInterest() {
+            if (key != null && key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+
+        private void flush() throws IOException {
+            synchronized (writeQueue) {
+                while (!writeQueue.isEmpty()) {
+                    ByteBuffer head = writeQueue.peek();
+                    channel.write(head);
+                    if (head.hasRemaining()) {
+                        return;
+                    }
+                    writeQueue.poll();
+                }
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                openConnections.decrementAndGet();
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.dsd20252.model;
+
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Ένα αίτημα που περιμένει απαντήσεις από Workers: scatter-gather (αναζήτηση, στατιστικά, μετρικές) ή ένας Worker
+ * (λεπτομέρειες καταστήματος, καλάθι).
+ * Κρατά σε ένα σημείο όλη την κατάσταση του αιτήματος: το κανάλι απάντησης του χρήστη, ποιοι Workers
+ * δεν έχουν απαντήσει ακόμη, το μερικό αποτέλεσμα και το χρονόμετρο της προθεσμίας. Ολοκληρώνεται μία
+ * φορά, είτε όταν απαντήσουν όλοι είτε όταν λήξει η προθεσμία, και τότε αφαιρείται από τον Master.
+ */
+class PendingRequest {
+    final int segmentId;
+    final int typeID;
+    final ReplyChannel out;
+    final boolean allowPartial;     // Στη λήξη: μερικό αποτέλεσμα (true) ή σφάλμα (false)
+    final long startNanos = System.nanoTime();
+    final TraceContext trace;       // null αν το αίτημα δεν καταγράφεται στο tracing
+
+    private final Set<String> awaiting = new LinkedHashSet<>();   // Workers (host:port) που δεν απάντησαν
+    private final Set<String> failed = new LinkedHashSet<>();     // Workers που δεν έλαβαν καν το αίτημα
+    private final SearchOrder.Merge merge;                         // typeID 10
+    private final Map<String, Integer> sales = new HashMap<>();    // typeID 5, 6, 7
+    private final Map<String, String> metrics = new TreeMap<>();    // typeID 30: κείμενο ανά Worker
+    private Object reply;       // typeID 16 (Store) και 17 (αποτελέσματα καλαθιού)· null αν δεν βρέθηκε το κατάστημα
+    private boolean finished;
+    private ScheduledFuture<?> timer;
+    private Map<String, Object> cacheKey;   // Αν δεν είναι null, το πλήρες αποτέλεσμα μπαίνει στο SearchCache
+    private long cacheEpoch;
+
+    PendingRequest(int segmentId, int typeID, ReplyChannel out, boolean allowPartial, SearchOrder.Merge merge,
+                   TraceContext trace) {
+        this.segmentId = segmentId;
+        this.typeID = typeID;
+        this.out = out;
+        this.allowPartial = allowPartial;
+        this.merge = merge;
+        this.trace = trace;
+    }
+
+    synchronized void await(Collection<String> workerIds) {
+        awaiting.addAll(workerIds);
+    }
+
+    void cacheAs(Map<String, Object> key, long epoch) {
+        this.cacheKey = key;
+        this.cacheEpoch = epoch;
+    }
+
+    Map<String, Object> cacheKey() {
+        return cacheKey;
+    }
+
+    long cacheEpoch() {
+        return cacheEpoch;
+    }
+
+    synchronized void setTimer(ScheduledFuture<?> timer) {
+        this.timer = timer;
+        if (finished) {
+            timer.cancel(false);    // Απάντησαν όλοι πριν οριστεί η προθεσμία
+        }
+    }
+
+    // Προσθέτει την απάντηση ενός Worker· false αν δεν την περιμέναμε (διπλή ή μετά το τέλος)
+    @SuppressWarnings("unchecked")
+    synchronized boolean accept(String workerId, Object data) {
+        if (finished || !awaiting.remove(workerId)) {
+            return false;
+        }
+        if (typeID == 16 || typeID == 17) {
+            reply = data;
+        } else if (typeID == 30) {
+            metrics.put(workerId, (String) data);
+        } else if (merge != null) {
+            merge.add((List<SearchOrder.Ranked>) data);
+        } else {
+            for (Map.Entry<String, Integer> e : ((Map<String, Integer>) data).entrySet()) {
+                sales.merge(e.getKey(), e.getValue(), Integer::sum);
+            }
+        }
+        return true;
+    }
+
+    // Η αποστολή προς τον Worker απέτυχε· δεν τον περιμένουμε, αλλά το αποτέλεσμα θα είναι μερικό
+    synchronized void failed(String workerId) {
+        if (awaiting.remove(workerId)) {
+            failed.add(workerId);
+        }
+    }
+
+    // Δεν περιμένουμε πια αυτόν τον Worker, γιατί το αίτημα θα σταλεί σε άλλον
+    synchronized void forget(String workerId) {
+        awaiting.remove(workerId);
+    }
+
+    synchronized boolean isComplete() {
+        return awaiting.isEmpty();
+    }
+
+    synchronized List<String> awaitingIds() {
+        return new ArrayList<>(awaiting);
+    }
+
+    /*
+     * Κλείνει το αίτημα και επιστρέφει τους Workers που δεν απάντησαν (κενή λίστα αν απάντησαν όλοι).
+     * null αν το αίτημα είχε ήδη κλείσει, ώστε μόνο ένας από απάντηση/προθεσμία να στείλει στον χρήστη.
+     */
+    synchronized List<String> finish() {
+        if (finished) {
+            return null;
+        }
+        finished = true;
+        if (timer != null) {
+            timer.cancel(false);
+        }
+        List<String> missing = new ArrayList<>(failed);
+        missing.addAll(awaiting);
+        return missing;
+    }
+
+    // Το αποτέλεσμα για τον χρήστη (καλείται μετά το finish)
+    synchronized Object result() {
+        if (typeID == 16 || typeID == 17) {
+            return reply;
+        }
+        if (typeID == 30) {
+            StringBuilder text = new StringBuilder(Metrics.render());   // Του Master και μετά κάθε Worker
+            for (String worker : metrics.values()) {
+                text.append(worker);
+            }
+            return text.toString();
+        }
+        if (merge == null) {
+            return sales;
+        }
+        if (!merge.isPaged()) {
+            return merge.results();
+        }
+        Map<String, Object> page = new HashMap<>();
+        page.put("stores", merge.results());
+        page.put("nextCursor", merge.nextCursor());
+        return page;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.dsd20252.model;
+
+import java.io.*;
+import java.net.Socket;
+
+/**
+ * Μόνιμη TCP σύνδεση προς έναν απομακρυσμένο κόμβο (Worker ή reducer port του Master).
+ * Η σύνδεση ανοίγει μία φορά και μεταφέρει πολλά Chunks, το καθένα με το δικό του segmentID,
+ * ώστε να μην πληρώνουμε TCP handshake και κεφαλίδα πρωτοκόλλου για κάθε αίτημα.
+ * Αν η σύνδεση κοπεί, ανοίγει ξανά στην επόμενη αποστολή. Ο απέναντι δεν στέλνει κεφαλίδα, οπότε γράφουμε
+ * πάντα στην ChunkCodec.VERSION και ένας παλαιότερος κόμβος απορρίπτει τη σύνδεση αντί να τη διαβάσει λάθος.
+ */
+class PersistentConnection {
+    private final String host;
+    private final int port;
+
+    private Socket socket;
+    private ChunkOutputStream out;
+
+    PersistentConnection(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    // Στέλνει ένα Chunk. Αν η αποστολή αποτύχει, γίνεται μία επανασύνδεση και νέα προσπάθεια.
+    synchronized void send(Chunk chunk) throws IOException {
+        try {
+            write(chunk);
+        } catch (IOException e) {
+            close();
+            write(chunk);
+        }
+    }
+
+    private void write(Chunk chunk) throws IOException {
+        if (socket == null) {
+            open();
+        }
+        out.writeChunk(chunk);
+    }
+
+    private void open() throws IOException {
+        Socket s = new Socket(host, port);
+        s.setTcpNoDelay(true);
+        socket = s;
+        out = new ChunkOutputStream(s.getOutputStream());
+
+        // Ο απέναντι κόμβος δεν γράφει σε αυτή τη σύνδεση, οπότε αν το read επιστρέψει
+        // σημαίνει ότι έκλεισε: κλείνουμε κι εμείς ώστε η επόμενη αποστολή να ξανασυνδεθεί.
+        Thread.ofVirtual().name("watch-" + this).start(() -> {
+            try {
+                while (s.getInputStream().read() != -1) {
+                    // αγνοούμε
+                }
+            } catch (IOException ignored) {
+            }
+            closeIfCurrent(s);
+        });
+    }
+
+    private synchronized void closeIfCurrent(Socket s) {
+        if (socket == s) {
+            close();
+        }
+    }
+
+    synchronized void close() {
+        try {
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException ignored) {
+        }
+        socket = null;
+        out = null;
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + port;
+    }
+}
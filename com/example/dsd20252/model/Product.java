@@ -1,22 +1,24 @@
 package com.example.dsd20252.model;
 
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 //Product object class
 public class Product implements Serializable {
     private String productName;
     private String productType;
-    private int availableAmount;
+    // Τα ποσά αποθέματος/πωλήσεων αλλάζουν με CAS ώστε οι αγορές να μη χρειάζονται κλείδωμα
+    private final AtomicInteger availableAmount = new AtomicInteger();
     private double price;
-    private int soldAmount;
+    private final AtomicInteger soldAmount = new AtomicInteger();
     private int initialAmount ;
 
 
     public String getProductName() { return productName; }
     public String getProductType() { return productType; }
-    public int getAvailableAmount() { return availableAmount; }
+    public int getAvailableAmount() { return availableAmount.get(); }
     public double getPrice() { return price; }
-    public int getSoldAmount() { return soldAmount; }
+    public int getSoldAmount() { return soldAmount.get(); }
     public int getInitialAmount() { return initialAmount; }
 
 
@@ -24,9 +26,29 @@ public class Product implements Serializable {
 
     public void setProductName(String productName) { this.productName = productName; }
     public void setProductType(String productType) { this.productType = productType; }
-    public void setAvailableAmount(int availableAmount) { this.availableAmount = availableAmount; }
+    public void setAvailableAmount(int availableAmount) { this.availableAmount.set(availableAmount); }
     public void setPrice(double price) { this.price = price; }
-    public void setSoldAmount(int soldAmount) { this.soldAmount = soldAmount; }
+    public void setSoldAmount(int soldAmount) { this.soldAmount.set(soldAmount); }
     public void setInitialAmount(int initialAmount ) {  this.initialAmount = initialAmount; }
 
+    // Αφαιρεί quantity από το απόθεμα μόνο αν επαρκεί και προσθέτει στις πωλήσεις, χωρίς κλείδωμα
+    public boolean tryPurchase(int quantity) {
+        while (true) {
+            int available = availableAmount.get();
+            if (available < quantity) {
+                return false;
+            }
+            if (availableAmount.compareAndSet(available, available - quantity)) {
+                soldAmount.addAndGet(quantity);
+                return true;
+            }
+        }
+    }
+
+    // Αναιρεί μια επιτυχημένη tryPurchase (π.χ. όταν αποτύχει άλλο προϊόν του ίδιου καλαθιού)
+    public void cancelPurchase(int quantity) {
+        soldAmount.addAndGet(-quantity);
+        availableAmount.addAndGet(quantity);
+    }
+
 }
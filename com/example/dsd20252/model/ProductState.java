@@ -0,0 +1,10 @@
+package com.example.dsd20252.model;
+
+import java.io.Serializable;
+
+/**
+ * Η κατάσταση ενός προϊόντος μετά από αγορά, όπως την εφάρμοσε ο primary: τα αντίγραφα και η ανάκτηση
+ * από το log την αντιγράφουν αντί να ξαναεκτελέσουν την αγορά (typeID 19).
+ */
+public record ProductState(String productName, int available, int sold) implements Serializable {
+}
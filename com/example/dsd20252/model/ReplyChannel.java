@@ -0,0 +1,15 @@
+package com.example.dsd20252.model;
+
+import java.io.IOException;
+
+/**
+ * Το κανάλι από το οποίο ο Master απαντά σε έναν πελάτη, είτε η σύνδεση εξυπηρετείται
+ * με blocking socket (SocketReplyChannel) είτε από τον NioServer.
+ */
+interface ReplyChannel {
+    void send(Chunk chunk) throws IOException;
+
+    boolean isOpen();
+
+    void close();
+}
@@ -0,0 +1,166 @@
+package com.example.dsd20252.model;
+
+import java.util.*;
+
+/**
+ * Cache αποτελεσμάτων αναζήτησης στον Master, με όριο μεγέθους και αντικατάσταση LRU.
+ * Το κλειδί είναι τα φίλτρα της αναζήτησης με την ακριβή θέση του χρήστη, οπότε επιτυχία έχει μόνο η ίδια
+ * αναζήτηση από το ίδιο σημείο (π.χ. επόμενες σελίδες, ανανέωση).
+ * Προσεγγιστικές επιτυχίες (approximate, searchCacheApproximate=true): η θέση κβαντίζεται σε κελιά
+ * cellDegrees μοιρών και η αναζήτηση γίνεται από το κέντρο του κελιού, οπότε όσοι ψάχνουν από την ίδια
+ * γειτονιά με τα ίδια φίλτρα μοιράζονται την ίδια εγγραφή. Το αποτέλεσμα τότε διαφέρει από την ακριβή
+ * αναζήτηση: αποστάσεις και ταξινόμηση είναι από το κέντρο, και καταστήματα κοντά στο όριο της ακτίνας
+ * μπορεί να λείπουν ή να περισσεύουν (έως μισή διαγώνιο κελιού).
+ * Μια εγγραφή ακυρώνεται όταν αλλάζει (εισαγωγή, βαθμολογία, προϊόντα) κατάστημα που μπορεί να βρίσκεται
+ * στην ακτίνα αναζήτησης από το κελί της. Για να μη μπει στο cache αποτέλεσμα που υπολογίστηκε πριν από
+ * μια ακύρωση, κάθε ακύρωση αυξάνει ένα epoch και το put γίνεται μόνο αν το epoch δεν άλλαξε.
+ * Οι εγγραφές εφαρμόζονται στους Workers ασύγχρονα, οπότε μένει ένα μικρό παράθυρο όπου μια αναζήτηση
+ * μπορεί να μη δει μια εγγραφή που μόλις ακυρώθηκε· γι' αυτό κάθε εγγραφή λήγει και μετά από ttl.
+ */
+class SearchCache {
+    private final int maxEntries;
+    private final double cellDegrees;
+    private final double radiusKm;
+    private final long ttlNanos;
+    private final boolean approximate;
+
+    private record Entry(Object result, long storedAt) {
+    }
+
+    private final LinkedHashMap<Map<String, Object>, Entry> entries;
+    // Τα κλειδιά κάθε κελιού (κλειδί: το κέντρο του κελιού της θέσης τους), για τις ακυρώσεις ανά περιοχή
+    private final Map<List<Double>, Set<Map<String, Object>>> byCell = new HashMap<>();
+    private long epoch;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    SearchCache(int maxEntries, double cellDegrees, double radiusKm, long ttlMillis, boolean approximate) {
+        this.maxEntries = maxEntries;
+        this.cellDegrees = cellDegrees;
+        this.radiusKm = radiusKm;
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.approximate = approximate;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Map<String, Object>, Entry> eldest) {
+                if (size() <= SearchCache.this.maxEntries) {
+                    return false;
+                }
+                unindex(eldest.getKey());
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    boolean isApproximate() {
+        return approximate;
+    }
+
+    // Τα φίλτρα με τα οποία εκτελείται η αναζήτηση: τα ίδια, ή με προσεγγιστικές επιτυχίες αντίγραφο με τη
+    // θέση στο κέντρο του κελιού της. Τα φίλτρα του χρήστη δεν αλλάζουν.
+    Map<String, Object> searchFilters(Map<String, Object> filters) {
+        if (!approximate) {
+            return filters;
+        }
+        Map<String, Object> snapped = new HashMap<>(filters);
+        snapped.put("latitude", snap((double) filters.get("latitude")));
+        snapped.put("longitude", snap((double) filters.get("longitude")));
+        return snapped;
+    }
+
+    // Το κλειδί του cache για τα φίλτρα που επέστρεψε το searchFilters
+    Map<String, Object> keyFor(Map<String, Object> searchFilters) {
+        Map<String, Object> key = new HashMap<>(searchFilters);
+        key.remove("allowPartial");     // Στο cache μπαίνουν μόνο πλήρη αποτελέσματα
+        return key;
+    }
+
+    private double snap(double degrees) {
+        return (Math.floor(degrees / cellDegrees) + 0.5) * cellDegrees;
+    }
+
+    synchronized Object get(Map<String, Object> key) {
+        Entry entry = entries.get(key);
+        if (entry != null && System.nanoTime() - entry.storedAt() > ttlNanos) {
+            entries.remove(key);
+            unindex(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.result();
+    }
+
+    synchronized long epoch() {
+        return epoch;
+    }
+
+    // Αποθηκεύει το αποτέλεσμα, εκτός αν μεσολάβησε ακύρωση από τότε που ξεκίνησε η αναζήτηση
+    synchronized void put(Map<String, Object> key, Object result, long startEpoch) {
+        if (startEpoch != epoch) {
+            return;
+        }
+        entries.put(key, new Entry(result, System.nanoTime()));
+        byCell.computeIfAbsent(cellOf(key), c -> new HashSet<>()).add(key);
+    }
+
+    // Ακυρώνει όσες εγγραφές θα μπορούσαν να περιέχουν κατάστημα στο σημείο (lat, lon)
+    synchronized void invalidate(double lat, double lon) {
+        epoch++;
+        // Απόσταση κέντρου κελιού - καταστήματος: ακτίνα αναζήτησης συν περιθώριο ενός κελιού
+        double reachKm = radiusKm + cellDegrees * SpatialIndex.KM_PER_DEGREE;
+        Iterator<Map.Entry<List<Double>, Set<Map<String, Object>>>> it = byCell.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<List<Double>, Set<Map<String, Object>>> cell = it.next();
+            if (SpatialIndex.distance(cell.getKey().get(0), cell.getKey().get(1), lat, lon) <= reachKm) {
+                for (Map<String, Object> key : cell.getValue()) {
+                    entries.remove(key);
+                    invalidations++;
+                }
+                it.remove();
+            }
+        }
+    }
+
+    // Μαζικές αλλαγές (μαζική εισαγωγή, αλλαγή Workers): αδειάζει όλο το cache
+    synchronized void clear() {
+        epoch++;
+        invalidations += entries.size();
+        entries.clear();
+        byCell.clear();
+    }
+
+    private void unindex(Map<String, Object> key) {
+        List<Double> cell = cellOf(key);
+        Set<Map<String, Object>> keys = byCell.get(cell);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                byCell.remove(cell);
+            }
+        }
+    }
+
+    private List<Double> cellOf(Map<String, Object> key) {
+        return List.of(snap((Double) key.get("latitude")), snap((Double) key.get("longitude")));
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        return String.format("entries=%d/%d%s hits=%d misses=%d hitRate=%.1f%% evictions=%d invalidations=%d",
+                entries.size(), maxEntries, approximate ? " (approximate)" : "", hits, misses,
+                lookups == 0 ? 0.0 : 100.0 * hits / lookups, evictions, invalidations);
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.dsd20252.model;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Σειρά ταξινόμησης και σελιδοποίηση των αποτελεσμάτων αναζήτησης (typeID 10).
+ * Κάθε κατάστημα έχει κλειδί (τιμή ταξινόμησης, απόσταση, όνομα), όπου μικρότερο σημαίνει καλύτερο:
+ *   distance: απόσταση από τον χρήστη
+ *   stars:    περισσότερα αστέρια πρώτα (και μετά τα πιο κοντινά)
+ *   price:    μικρότερη μέση τιμή προϊόντων πρώτα (και μετά τα πιο κοντινά)
+ * Το cursor μιας σελίδας είναι το κλειδί του τελευταίου καταστήματός της, οπότε η επόμενη σελίδα ζητά
+ * μόνο όσα είναι αυστηρά μετά από αυτό (keyset pagination). Έτσι κάθε Worker στέλνει το πολύ limit
+ * καταστήματα ανά σελίδα, όσο βαθιά κι αν είναι η σελίδα.
+ * Ο Worker στέλνει κάθε αποτέλεσμα μαζί με το κλειδί του, οπότε ο Master συγχωνεύει χωρίς να χρειάζεται
+ * τα πεδία του καταστήματος· το ίδιο το αποτέλεσμα είναι StoreSummary ή, με includeProducts, Store.
+ */
+class SearchOrder {
+    static final String DISTANCE = "distance";
+    static final String STARS = "stars";
+    static final String PRICE = "price";
+
+    private final String sortBy;
+    private final double lat;
+    private final double lon;
+    private final Key after;     // Το cursor της προηγούμενης σελίδας (null για την πρώτη)
+
+    // Κλειδί ταξινόμησης ενός καταστήματος
+    record Key(double score, double distance, String name) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key o) {
+            int c = Double.compare(score, o.score);
+            if (c == 0) c = Double.compare(distance, o.distance);
+            if (c == 0) c = name.compareTo(o.name);
+            return c;
+        }
+    }
+
+    // Αποτέλεσμα (Store ή StoreSummary) μαζί με το κλειδί του, ώστε να υπολογίζεται μία φορά
+    record Ranked(Object result, Key key) {
+    }
+
+    static String nameOf(Object result) {
+        return result instanceof Store store ? store.getStoreName() : ((StoreSummary) result).storeName();
+    }
+
+    SearchOrder(Map<String, Object> filters) {
+        this.sortBy = (String) filters.getOrDefault("sortBy", DISTANCE);
+        if (!sortBy.equals(DISTANCE) && !sortBy.equals(STARS) && !sortBy.equals(PRICE)) {
+            throw new IllegalArgumentException("Άγνωστη ταξινόμηση: " + sortBy);
+        }
+        this.lat = (double) filters.get("latitude");
+        this.lon = (double) filters.get("longitude");
+        String cursor = (String) filters.get("cursor");
+        this.after = cursor == null ? null : decode(cursor);
+    }
+
+    Key keyOf(Store store) {
+        double distance = SpatialIndex.distance(lat, lon, store.getLatitude(), store.getLongitude());
+        double score = switch (sortBy) {
+            case STARS -> -store.getStars();
+            case PRICE -> averagePrice(store);
+            default -> distance;
+        };
+        return new Key(score, distance, Worker.nameKey(store.getStoreName()));
+    }
+
+    // true αν το κατάστημα ανήκει σε επόμενη σελίδα από το cursor
+    boolean isAfterCursor(Key key) {
+        return after == null || key.compareTo(after) > 0;
+    }
+
+    // Το cursor που δείχνει αμέσως μετά από αυτό το κλειδί: "sortBy;score;distance;όνομα"
+    String cursorAfter(Key key) {
+        return sortBy + ";" + key.score() + ";" + key.distance() + ";" + key.name();
+    }
+
+    private Key decode(String cursor) {
+        String[] parts = cursor.split(";", 4);
+        if (parts.length != 4 || !parts[0].equals(sortBy)) {
+            throw new IllegalArgumentException("Μη έγκυρο cursor για ταξινόμηση " + sortBy);
+        }
+        try {
+            return new Key(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), parts[3]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Μη έγκυρο cursor: " + cursor);
+        }
+    }
+
+    private static double averagePrice(Store store) {
+        List<Product> products = store.getProducts();
+        if (products == null || products.isEmpty()) {
+            return 0;
+        }
+        double sum = 0;
+        int count = 0;
+        for (Product p : products.toArray(new Product[0])) {
+            sum += p.getPrice();
+            count++;
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * Κρατά τα limit καλύτερα καταστήματα από όσα του δοθούν, με έναν max-heap μεγέθους limit:
+     * κάθε νέο κατάστημα συγκρίνεται μόνο με το χειρότερο που κρατάμε ήδη.
+     */
+    class TopK {
+        private final int limit;
+        private final PriorityQueue<Ranked> heap;
+
+        TopK(int limit) {
+            this.limit = limit;
+            this.heap = new PriorityQueue<>(Math.min(limit, 1024) + 1,
+                    Comparator.comparing(Ranked::key, Comparator.reverseOrder()));
+        }
+
+        void offer(Store store) {
+            Key key = keyOf(store);
+            if (!isAfterCursor(key)) {
+                return;
+            }
+            if (heap.size() < limit) {
+                heap.add(new Ranked(store, key));
+            } else if (key.compareTo(heap.peek().key()) < 0) {
+                heap.poll();
+                heap.add(new Ranked(store, key));
+            }
+        }
+
+        // Τα αποτελέσματα με σειρά ταξινόμησης, στη μορφή που ζήτησε ο χρήστης
+        List<Ranked> sorted(Function<Store, Object> projection) {
+            Ranked[] ranked = heap.toArray(new Ranked[0]);
+            Arrays.sort(ranked, Comparator.comparing(Ranked::key));
+            List<Ranked> results = new ArrayList<>(ranked.length);
+            for (Ranked r : ranked) {
+                results.add(new Ranked(projection.apply((Store) r.result()), r.key()));
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Συγχωνεύει στον Master τις ταξινομημένες λίστες των Workers καθώς φτάνουν. Κρατά μόνο τα limit
+     * πρώτα: κάθε απάντηση συγχωνεύεται με το τρέχον αποτέλεσμα σε O(limit) και ό,τι περισσεύει πετιέται.
+     */
+    class Merge {
+        private final int limit;
+        private final boolean paged;
+        private List<Ranked> merged = new ArrayList<>();
+
+        // Χωρίς limit συγχωνεύονται όλα και η απάντηση είναι απλή λίστα, όπως πριν τη σελιδοποίηση
+        Merge(Integer limit) {
+            this.limit = limit != null ? limit : Integer.MAX_VALUE;
+            this.paged = limit != null;
+        }
+
+        boolean isPaged() {
+            return paged;
+        }
+
+        void add(List<Ranked> sorted) {
+            List<Ranked> result = new ArrayList<>(Math.min(limit, merged.size() + sorted.size()));
+            int i = 0, j = 0;
+            while (result.size() < limit && (i < merged.size() || j < sorted.size())) {
+                if (j == sorted.size() || (i < merged.size() && merged.get(i).key().compareTo(sorted.get(j).key()) <= 0)) {
+                    result.add(merged.get(i++));
+                } else {
+                    result.add(sorted.get(j++));
+                }
+            }
+            merged = result;
+        }
+
+        List<Object> results() {
+            List<Object> results = new ArrayList<>(merged.size());
+            for (Ranked r : merged) {
+                results.add(r.result());
+            }
+            return results;
+        }
+
+        // Υπάρχει πιθανώς επόμενη σελίδα μόνο αν γέμισε η τρέχουσα
+        String nextCursor() {
+            return merged.size() < limit ? null : cursorAfter(merged.get(merged.size() - 1).key());
+        }
+    }
+}
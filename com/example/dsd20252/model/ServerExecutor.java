@@ -0,0 +1,158 @@
+package com.example.dsd20252.model;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Εκτελεστής για τις συνδέσεις/αιτήματα που δέχονται ο Master και ο Worker.
+ * Αντί για ένα νέο platform thread ανά σύνδεση, υποστηρίζει δύο μοντέλα (κλειδί executorMode στο config):
+ *  - virtual: ένα virtual thread ανά εργασία (προεπιλογή)
+ *  - bounded: σταθερό pool από executorThreads threads με ουρά αναμονής
+ * Και στα δύο μοντέλα δεχόμαστε το πολύ executorMaxTasks εργασίες ταυτόχρονα (σε εκτέλεση ή σε αναμονή).
+ * Πέρα από αυτό το όριο το trySubmit επιστρέφει false και ο καλών αποφασίζει (κλείσιμο σύνδεσης ή εκτέλεση επί τόπου).
+ *
+ * Οι μόνιμες συνδέσεις δεν τρέχουν στο pool: ο βρόχος ανάγνωσης μιας σύνδεσης περιμένει στο socket όσο αυτή
+ * είναι ανοιχτή, οπότε στο bounded θα κρατούσε ένα thread για πάντα και η σύνδεση executorThreads + 1 δεν θα
+ * εξυπηρετούνταν ποτέ. Το tryStartConnection τρέχει κάθε βρόχο σε δικό του virtual thread, με ξεχωριστό όριο
+ * executorMaxConnections, και ο βρόχος υποβάλλει στο pool μόνο την επεξεργασία κάθε Chunk.
+ */
+class ServerExecutor {
+    private static final List<ServerExecutor> all = new CopyOnWriteArrayList<>();
+
+    private final String name;
+    private final String mode;
+    private final ExecutorService executor;
+    private final int maxTasks;
+    private final Semaphore permits;
+    private final ThreadFactory connectionThreads;
+    private final Semaphore connectionPermits;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private ServerExecutor(String name, String mode, int threads, int maxTasks, int maxConnections) {
+        this.name = name;
+        this.mode = mode;
+        this.maxTasks = maxTasks;
+        this.permits = new Semaphore(maxTasks);
+        this.connectionThreads = Thread.ofVirtual().name(name + "-connection-", 0).factory();
+        this.connectionPermits = new Semaphore(maxConnections);
+        if (mode.equals("bounded")) {
+            ThreadFactory factory = Thread.ofPlatform().name(name + "-", 0).daemon(true).factory();
+            // Η ουρά δεν γεμίζει ποτέ: το όριο επιβάλλεται από το semaphore
+            executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), factory);
+        } else {
+            executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+        }
+        all.add(this);
+        String label = "executor=\"" + name + "\"";
+        Metrics.gauge("dsd_executor_active", label, this::getActive);
+        Metrics.gauge("dsd_executor_queued", label, this::getQueued);
+        Metrics.gauge("dsd_executor_rejected", label, this::getRejected);
+        Metrics.gauge("dsd_executor_connections", label, this::getConnections);
+    }
+
+    // Δημιουργεί εκτελεστή με τις ρυθμίσεις executorMode, executorThreads, executorMaxTasks, executorMaxConnections
+    static ServerExecutor fromConfig(String name, Properties prop) {
+        String mode = prop.getProperty("executorMode", "virtual").trim();
+        if (!mode.equals("virtual") && !mode.equals("bounded")) {
+            System.err.println("Άγνωστο executorMode '" + mode + "', χρησιμοποιείται virtual");
+            mode = "virtual";
+        }
+        int threads = Integer.parseInt(prop.getProperty("executorThreads",
+                String.valueOf(Runtime.getRuntime().availableProcessors() * 2)).trim());
+        int maxTasks = Integer.parseInt(prop.getProperty("executorMaxTasks", "10000").trim());
+        int maxConnections = Integer.parseInt(prop.getProperty("executorMaxConnections", "1000").trim());
+        return new ServerExecutor(name, mode, threads, Math.max(threads, maxTasks), maxConnections);
+    }
+
+    // Ξεκινά τον βρόχο ανάγνωσης μιας μόνιμης σύνδεσης εκτός του pool. Επιστρέφει false αν έχει ξεπεραστεί
+    // το όριο συνδέσεων.
+    boolean tryStartConnection(Runnable loop) {
+        if (!connectionPermits.tryAcquire()) {
+            rejected.increment();
+            return false;
+        }
+        connections.incrementAndGet();
+        connectionThreads.newThread(() -> {
+            try {
+                loop.run();
+            } finally {
+                connections.decrementAndGet();
+                connectionPermits.release();
+            }
+        }).start();
+        return true;
+    }
+
+    // Υποβάλλει εργασία. Επιστρέφει false αν έχει ξεπεραστεί το όριο εργασιών.
+    boolean trySubmit(Runnable task) {
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            return false;
+        }
+        submitted.increment();
+        try {
+            executor.execute(() -> {
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                    completed.increment();
+                    permits.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            rejected.increment();
+            return false;
+        }
+    }
+
+    int getActive() { return active.get(); }
+    int getQueued() { return Math.max(0, maxTasks - permits.availablePermits() - active.get()); }
+    long getSubmitted() { return submitted.sum(); }
+    long getCompleted() { return completed.sum(); }
+    long getRejected() { return rejected.sum(); }
+    int getConnections() { return connections.get(); }
+
+    @Override
+    public String toString() {
+        return name + " [" + mode + "] connections=" + getConnections() + " active=" + getActive() + " queued=" + getQueued()
+                + " submitted=" + getSubmitted() + " completed=" + getCompleted() + " rejected=" + getRejected();
+    }
+
+    static List<ServerExecutor> all() {
+        return all;
+    }
+
+    // Τυπώνει περιοδικά τα στατιστικά όλων των εκτελεστών (executorStatsSeconds, 0 = ποτέ)
+    static void startStatsReporter(Properties prop) {
+        int seconds = Integer.parseInt(prop.getProperty("executorStatsSeconds", "0").trim());
+        if (seconds <= 0) {
+            return;
+        }
+        Thread reporter = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(seconds * 1000L);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (ServerExecutor executor : all) {
+                    System.out.println("[executor] " + executor);
+                }
+            }
+        });
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+}
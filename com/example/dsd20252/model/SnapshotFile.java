@@ -0,0 +1,300 @@
+package com.example.dsd20252.model;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Δυαδική μορφή snapshot της κατάστασης ενός Worker, σχεδιασμένη για memory-mapping (FileChannel.map).
+ * Layout:
+ *   [int MAGIC][int έκδοση][int καταστήματα][int προϊόντα][int strings]
+ *   καταστήματα, STORE_SIZE bytes το καθένα:
+ *     [int όνομα][int foodCategory][int priceCategory][int logo][int holders]
+ *     [double lat][double lon][int stars][int votes][int πρώτο προϊόν][int πλήθος προϊόντων]
+ *   προϊόντα, PRODUCT_SIZE bytes το καθένα:
+ *     [int όνομα][int τύπος][double τιμή][int διαθέσιμα][int πωλήσεις][int αρχική ποσότητα]
+ *   string table: (strings + 1) int offsets και μετά τα UTF-8 bytes
+ * Τα πεδία κειμένου είναι δείκτες στο string table (-1 = null), οπότε οι τιμές που επαναλαμβάνονται
+ * (κατηγορίες, τύποι προϊόντων, holders) αποθηκεύονται και αποκωδικοποιούνται μία φορά. Οι εγγραφές έχουν
+ * σταθερό μέγεθος, άρα η φόρτωση είναι ένα πέρασμα με απόλυτες θέσεις, χωρίς parsing ανά πεδίο.
+ */
+class SnapshotFile {
+    static final int MAGIC = 0x44534E50;    // "DSNP"
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final int STORE_SIZE = 52;
+    private static final int PRODUCT_SIZE = 28;
+
+    // Αντίγραφο ενός καταστήματος (με αντίγραφα των προϊόντων του) και οι holders του, για κωδικοποίηση
+    record Entry(Store store, Product[] products, List<String> holders) {
+    }
+
+    /*
+     * Αντιγράφει την τρέχουσα κατάσταση των καταστημάτων. Καλείται όσο η κατάσταση μένει σταθερή (mutationGate
+     * του Worker) και κάνει μόνο τα αντίγραφα· το encode, που είναι το ακριβό μέρος, τρέχει μετά εκτός κλειδώματος.
+     */
+    static List<Entry> capture(Collection<Store> stores, Function<Store, List<String>> holdersOf) {
+        List<Entry> entries = new ArrayList<>(stores.size());
+        for (Store store : stores) {
+            Store copy = new Store();
+            copy.setStoreName(store.getStoreName());
+            copy.setFoodCategory(store.getFoodCategory());
+            copy.setPriceCategory(store.getPriceCategory());
+            copy.setStoreLogo(store.getStoreLogo());
+            copy.setLatitude(store.getLatitude());
+            copy.setLongitude(store.getLongitude());
+            copy.setStars(store.getStars());
+            copy.setNoOfVotes(store.getNoOfVotes());
+            Product[] products = store.getProducts() == null ? new Product[0] : store.getProducts().toArray(new Product[0]);
+            for (int i = 0; i < products.length; i++) {
+                Product p = products[i];
+                Product c = new Product();
+                c.setProductName(p.getProductName());
+                c.setProductType(p.getProductType());
+                c.setPrice(p.getPrice());
+                c.setAvailableAmount(p.getAvailableAmount());
+                c.setSoldAmount(p.getSoldAmount());
+                c.setInitialAmount(p.getInitialAmount());
+                products[i] = c;
+            }
+            entries.add(new Entry(copy, products, holdersOf.apply(store)));
+        }
+        return entries;
+    }
+
+    // Κωδικοποιεί τα αντίγραφα των καταστημάτων (με τους holders τους) στη μορφή του αρχείου
+    static byte[] encode(List<Entry> entries) {
+        Map<String, Integer> index = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int productCount = 0;
+        int stringBytes = 0;
+
+        // Πρώτο πέρασμα: string table και πλήθη, ώστε να ξέρουμε το ακριβές μέγεθος
+        for (Entry entry : entries) {
+            Store store = entry.store();
+            productCount += entry.products().length;
+            stringBytes += intern(index, strings, store.getStoreName());
+            stringBytes += intern(index, strings, store.getFoodCategory());
+            stringBytes += intern(index, strings, store.getPriceCategory());
+            stringBytes += intern(index, strings, store.getStoreLogo());
+            stringBytes += intern(index, strings, String.join(",", entry.holders()));
+            for (Product p : entry.products()) {
+                stringBytes += intern(index, strings, p.getProductName());
+                stringBytes += intern(index, strings, p.getProductType());
+            }
+        }
+
+        int size = HEADER_SIZE + entries.size() * STORE_SIZE + productCount * PRODUCT_SIZE
+                + (strings.size() + 1) * 4 + stringBytes;
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).putInt(VERSION).putInt(entries.size()).putInt(productCount).putInt(strings.size());
+
+        int firstProduct = 0;
+        for (Entry entry : entries) {
+            Store store = entry.store();
+            out.putInt(indexOf(index, store.getStoreName()));
+            out.putInt(indexOf(index, store.getFoodCategory()));
+            out.putInt(indexOf(index, store.getPriceCategory()));
+            out.putInt(indexOf(index, store.getStoreLogo()));
+            out.putInt(indexOf(index, String.join(",", entry.holders())));
+            out.putDouble(store.getLatitude());
+            out.putDouble(store.getLongitude());
+            out.putInt(store.getStars());
+            out.putInt(store.getNoOfVotes());
+            out.putInt(firstProduct);
+            out.putInt(entry.products().length);
+            firstProduct += entry.products().length;
+        }
+        for (Entry entry : entries) {
+            for (Product p : entry.products()) {
+                out.putInt(indexOf(index, p.getProductName()));
+                out.putInt(indexOf(index, p.getProductType()));
+                out.putDouble(p.getPrice());
+                out.putInt(p.getAvailableAmount());
+                out.putInt(p.getSoldAmount());
+                out.putInt(p.getInitialAmount());
+            }
+        }
+
+        int offset = 0;
+        for (byte[] s : strings) {
+            out.putInt(offset);
+            offset += s.length;
+        }
+        out.putInt(offset);
+        for (byte[] s : strings) {
+            out.put(s);
+        }
+        return out.array();
+    }
+
+    /*
+     * Κάνει map το αρχείο και δίνει κάθε κατάστημα (με τα προϊόντα του) και τους holders του στο restore.
+     * Επιστρέφει το πλήθος των καταστημάτων. Πριν δοθεί οτιδήποτε στο restore ελέγχονται τα πλήθη, οι θέσεις
+     * των προϊόντων και οι δείκτες στο string table· ένα ατελές ή χαλασμένο αρχείο δίνει StreamCorruptedException.
+     */
+    static int load(Path file, BiConsumer<Store, List<String>> restore) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Πολύ μεγάλο snapshot: " + file);
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (map.limit() < HEADER_SIZE || map.getInt(0) != MAGIC) {
+                throw new StreamCorruptedException("Άγνωστη μορφή snapshot: " + file);
+            }
+            if (map.getInt(4) != VERSION) {
+                throw new StreamCorruptedException("Μη υποστηριζόμενη έκδοση snapshot: " + map.getInt(4));
+            }
+            int storeCount = map.getInt(8);
+            int productCount = map.getInt(12);
+            int stringCount = map.getInt(16);
+            long stringsEnd = HEADER_SIZE + (long) storeCount * STORE_SIZE + (long) productCount * PRODUCT_SIZE
+                    + (stringCount + 1L) * 4;
+            if (storeCount < 0 || productCount < 0 || stringCount < 0 || stringsEnd > map.limit()) {
+                throw new StreamCorruptedException("Ατελές snapshot: " + file);
+            }
+            int productsAt = HEADER_SIZE + storeCount * STORE_SIZE;
+            int stringsAt = productsAt + productCount * PRODUCT_SIZE;
+            StringTable strings = new StringTable(map, stringsAt, stringCount);
+            if (!strings.isValid() || !validRecords(map, storeCount, productCount, stringCount, productsAt)) {
+                throw new StreamCorruptedException("Χαλασμένο snapshot: " + file);
+            }
+
+            for (int i = 0; i < storeCount; i++) {
+                int at = HEADER_SIZE + i * STORE_SIZE;
+                Store store = new Store();
+                store.setStoreName(strings.get(map.getInt(at)));
+                store.setFoodCategory(strings.get(map.getInt(at + 4)));
+                store.setPriceCategory(strings.get(map.getInt(at + 8)));
+                store.setStoreLogo(strings.get(map.getInt(at + 12)));
+                List<String> holders = strings.list(map.getInt(at + 16));
+                store.setLatitude(map.getDouble(at + 20));
+                store.setLongitude(map.getDouble(at + 28));
+                store.setStars(map.getInt(at + 36));
+                store.setNoOfVotes(map.getInt(at + 40));
+                int first = map.getInt(at + 44);
+                int count = map.getInt(at + 48);
+
+                List<Product> products = new ArrayList<>(count);
+                for (int j = first; j < first + count; j++) {
+                    int p = productsAt + j * PRODUCT_SIZE;
+                    Product product = new Product();
+                    product.setProductName(strings.get(map.getInt(p)));
+                    product.setProductType(strings.get(map.getInt(p + 4)));
+                    product.setPrice(map.getDouble(p + 8));
+                    product.setAvailableAmount(map.getInt(p + 16));
+                    product.setSoldAmount(map.getInt(p + 20));
+                    product.setInitialAmount(map.getInt(p + 24));
+                    products.add(product);
+                }
+                store.setProducts(products);
+                restore.accept(store, holders);
+            }
+            return storeCount;
+        }
+    }
+
+    // Οι εγγραφές καταστημάτων και προϊόντων δείχνουν μόνο σε υπαρκτά προϊόντα και strings
+    private static boolean validRecords(ByteBuffer map, int storeCount, int productCount, int stringCount, int productsAt) {
+        for (int i = 0; i < storeCount; i++) {
+            int at = HEADER_SIZE + i * STORE_SIZE;
+            for (int field = 0; field < 20; field += 4) {
+                if (!validString(map.getInt(at + field), stringCount)) {
+                    return false;
+                }
+            }
+            int first = map.getInt(at + 44);
+            int count = map.getInt(at + 48);
+            if (first < 0 || count < 0 || (long) first + count > productCount) {
+                return false;
+            }
+        }
+        for (int j = 0; j < productCount; j++) {
+            int p = productsAt + j * PRODUCT_SIZE;
+            if (!validString(map.getInt(p), stringCount) || !validString(map.getInt(p + 4), stringCount)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean validString(int i, int stringCount) {
+        return i >= -1 && i < stringCount;
+    }
+
+    // Προσθέτει το string στον πίνακα αν δεν υπάρχει· επιστρέφει πόσα νέα bytes χρειάστηκαν
+    private static int intern(Map<String, Integer> index, List<byte[]> strings, String s) {
+        if (s == null || index.containsKey(s)) {
+            return 0;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        index.put(s, strings.size());
+        strings.add(bytes);
+        return bytes.length;
+    }
+
+    private static int indexOf(Map<String, Integer> index, String s) {
+        return s == null ? -1 : index.get(s);
+    }
+
+    // Τα strings αποκωδικοποιούνται μόνο όταν ζητηθούν, και κάθε διαφορετικό μία φορά
+    private static class StringTable {
+        private final ByteBuffer map;
+        private final int offsetsAt;
+        private final int bytesAt;
+        private final String[] decoded;
+        private final Map<Integer, List<String>> lists = new HashMap<>();
+
+        StringTable(ByteBuffer map, int at, int count) {
+            this.map = map;
+            this.offsetsAt = at;
+            this.bytesAt = at + (count + 1) * 4;
+            this.decoded = new String[count];
+        }
+
+        // Οι offsets αυξάνονται από το 0 και τα bytes τους χωρούν στο αρχείο
+        boolean isValid() {
+            int previous = 0;
+            for (int i = 0; i <= decoded.length; i++) {
+                int offset = map.getInt(offsetsAt + i * 4);
+                if (offset < previous) {
+                    return false;
+                }
+                previous = offset;
+            }
+            return (long) bytesAt + previous <= map.limit();
+        }
+
+        String get(int i) {
+            if (i < 0) {
+                return null;
+            }
+            String s = decoded[i];
+            if (s == null) {
+                int start = map.getInt(offsetsAt + i * 4);
+                int end = map.getInt(offsetsAt + (i + 1) * 4);
+                byte[] bytes = new byte[end - start];
+                map.get(bytesAt + start, bytes);
+                s = new String(bytes, StandardCharsets.UTF_8);
+                decoded[i] = s;
+            }
+            return s;
+        }
+
+        // Λίστα χωρισμένη με κόμματα (οι holders), κοινή για όλα τα καταστήματα με την ίδια τιμή
+        List<String> list(int i) {
+            return lists.computeIfAbsent(i, k -> {
+                String s = get(k);
+                return s == null || s.isEmpty() ? List.of() : List.of(s.split(","));
+            });
+        }
+    }
+}
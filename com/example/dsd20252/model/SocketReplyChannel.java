@@ -0,0 +1,33 @@
+package com.example.dsd20252.model;
+
+import java.io.IOException;
+import java.net.Socket;
+
+// ReplyChannel πάνω σε blocking socket και ChunkOutputStream
+class SocketReplyChannel implements ReplyChannel {
+    private final Socket socket;
+    private final ChunkOutputStream out;
+
+    SocketReplyChannel(Socket socket, ChunkOutputStream out) {
+        this.socket = socket;
+        this.out = out;
+    }
+
+    @Override
+    public void send(Chunk chunk) throws IOException {
+        out.writeChunk(chunk);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !socket.isClosed();
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.dsd20252.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Χωρικό ευρετήριο καταστημάτων του Worker σε πλέγμα γεωγραφικού πλάτους/μήκους.
+ * Κάθε κατάστημα μπαίνει στο κελί που περιέχει τις συντεταγμένες του. Μια αναζήτηση ακτίνας
+ * εξετάζει μόνο τα κελιά που τέμνουν το bounding box του κύκλου, φιλτράρει φθηνά με το
+ * bounding box και καλεί τον ακριβή (τριγωνομετρικό) υπολογισμό απόστασης μόνο για όσα απομείνουν.
+ * Οι αναζητήσεις δεν κλειδώνουν: κάθε κελί είναι CopyOnWriteArrayList, οπότε διαβάζεται ενώ γίνονται εισαγωγές.
+ */
+class SpatialIndex {
+    static final double KM_PER_DEGREE = 60 * 1.1515 * 1.609344;  // Ίδια σταθερά με τον υπολογισμό της απόστασης
+
+    private final double cellDegrees;
+    private final Map<Long, List<Store>> cells = new ConcurrentHashMap<>();
+
+    SpatialIndex(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+    }
+
+    void add(Store store) {
+        cells.compute(cellOf(store.getLatitude(), store.getLongitude()), (k, cell) -> {
+            List<Store> updated = cell == null ? new CopyOnWriteArrayList<>() : cell;
+            updated.add(store);
+            return updated;
+        });
+    }
+
+    // Μαζική εισαγωγή (π.χ. φόρτωση snapshot): κάθε κελί αντιγράφεται μία φορά αντί για μία ανά κατάστημα
+    void addAll(List<Store> stores) {
+        Map<Long, List<Store>> byCell = new HashMap<>();
+        for (Store store : stores) {
+            byCell.computeIfAbsent(cellOf(store.getLatitude(), store.getLongitude()), k -> new ArrayList<>()).add(store);
+        }
+        for (Map.Entry<Long, List<Store>> e : byCell.entrySet()) {
+            cells.compute(e.getKey(), (k, cell) -> {
+                List<Store> updated = cell == null ? new CopyOnWriteArrayList<>() : cell;
+                updated.addAll(e.getValue());
+                return updated;
+            });
+        }
+    }
+
+    void remove(Store store) {
+        cells.computeIfPresent(cellOf(store.getLatitude(), store.getLongitude()), (k, cell) -> {
+            cell.remove(store);
+            return cell.isEmpty() ? null : cell;
+        });
+    }
+
+    // Επιστρέφει τα καταστήματα σε απόσταση το πολύ radiusKm από το σημείο (lat, lon)
+    List<Store> withinRadius(double lat, double lon, double radiusKm) {
+        double dLat = radiusKm / KM_PER_DEGREE;
+        double minLat = lat - dLat, maxLat = lat + dLat;
+        // Μέγιστη απόκλιση μήκους του κύκλου (στα σημεία επαφής του με μεσημβρινούς): asin(sin r / cos lat).
+        // Αν ο κύκλος περιέχει πόλο, καλύπτει όλα τα μήκη.
+        double dLon;
+        if (maxLat >= 90 || minLat <= -90) {
+            dLon = 180;
+        } else {
+            double ratio = Math.sin(Math.toRadians(dLat)) / Math.cos(Math.toRadians(lat));
+            dLon = ratio >= 1 ? 180 : Math.toDegrees(Math.asin(ratio));
+        }
+        double minLon = lon - dLon, maxLon = lon + dLon;
+
+        // Αν το bounding box περνά τον αντιμεσημβρινό (±180°), χωρίζεται σε δύο διαστήματα μήκους,
+        // ένα σε κάθε πλευρά
+        List<Store> results = new ArrayList<>();
+        if (dLon >= 180) {
+            scan(lat, lon, radiusKm, minLat, maxLat, -180, 180, results);
+        } else if (minLon < -180) {
+            scan(lat, lon, radiusKm, minLat, maxLat, minLon + 360, 180, results);
+            scan(lat, lon, radiusKm, minLat, maxLat, -180, maxLon, results);
+        } else if (maxLon > 180) {
+            scan(lat, lon, radiusKm, minLat, maxLat, minLon, 180, results);
+            scan(lat, lon, radiusKm, minLat, maxLat, -180, maxLon - 360, results);
+        } else {
+            scan(lat, lon, radiusKm, minLat, maxLat, minLon, maxLon, results);
+        }
+        return results;
+    }
+
+    // Εξετάζει τα κελιά του box [minLat, maxLat] x [minLon, maxLon] (χωρίς αναδίπλωση)
+    private void scan(double lat, double lon, double radiusKm, double minLat, double maxLat,
+                      double minLon, double maxLon, List<Store> results) {
+        long fromLat = index(minLat), toLat = index(maxLat);
+        long fromLon = index(minLon), toLon = index(maxLon);
+        for (long i = fromLat; i <= toLat; i++) {
+            for (long j = fromLon; j <= toLon; j++) {
+                List<Store> cell = cells.get(key(i, j));
+                if (cell == null) {
+                    continue;
+                }
+                for (Store store : cell) {
+                    double sLat = store.getLatitude(), sLon = store.getLongitude();
+                    if (sLat < minLat || sLat > maxLat || sLon < minLon || sLon > maxLon) {
+                        continue;
+                    }
+                    if (distance(lat, lon, sLat, sLon) <= radiusKm) {
+                        results.add(store);
+                    }
+                }
+            }
+        }
+    }
+
+    private long cellOf(double lat, double lon) {
+        return key(index(lat), index(lon));
+    }
+
+    private long index(double degrees) {
+        return (long) Math.floor(degrees / cellDegrees);
+    }
+
+    private static long key(long latIndex, long lonIndex) {
+        return (latIndex << 32) ^ (lonIndex & 0xFFFFFFFFL);
+    }
+
+    // Υπολογισμός απόστασης (σε km) μεταξύ δύο σημείων με βάση γεωγραφικό πλάτος και μήκος
+    static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double theta = lon1 - lon2;
+        double dist = Math.sin(Math.toRadians(lat1)) * Math.sin(Math.toRadians(lat2))
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.cos(Math.toRadians(theta));
+        dist = Math.acos(Math.min(1.0, Math.max(-1.0, dist))); // Στρογγυλοποίηση για ίδια σημεία (αλλιώς NaN)
+        dist = Math.toDegrees(dist);
+        dist = dist * KM_PER_DEGREE; // miles to km
+        return dist;
+    }
+}
@@ -10,8 +10,8 @@ public class Store implements Serializable {
     private double latitude;
     private double longitude;
     private String foodCategory;
-    private int stars;
-    private int noOfVotes;
+    private volatile int stars;         // volatile: οι βαθμολογίες ενημερώνονται ενώ άλλα threads κάνουν αναζήτηση
+    private volatile int noOfVotes;
     private String priceCategory;
     private String storeLogo;
     private List<Product> products;
@@ -1,56 +1,444 @@
 package com.example.dsd20252.model;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.io.File;
-import java.io.FileInputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
-//Parses the json file containing the store information
+/**
+ * Parses the json file containing the store information.
+ * Διαβάζει απευθείας από το byte stream (χωρίς ολόκληρο το αρχείο σε String και χωρίς DOM) και φτιάχνει
+ * τα Store/Product καθώς προχωράει. Ένα αρχείο μπορεί να περιέχει ένα κατάστημα, πίνακα καταστημάτων ή
+ * πολλά καταστήματα ένα ανά γραμμή (JSON lines). Το priceCategory υπολογίζεται από τον μέσο όρο τιμών
+ * των προϊόντων όσο διαβάζονται.
+ */
 public class StoreParser {
 
     public static Store parseStoreFromJson(String folderPath) throws Exception {
-        File jsonFile = new File(folderPath, "store.json");
-        FileInputStream fis = new FileInputStream(jsonFile);
-        byte[] data = fis.readAllBytes();
-        fis.close();
-        String json = new String(data, StandardCharsets.UTF_8);
+        List<Store> stores = new ArrayList<>(1);
+        parseStores(Path.of(folderPath, "store.json"), stores::add);
+        if (stores.isEmpty()) {
+            throw new IOException("Δεν βρέθηκε κατάστημα στο " + folderPath);
+        }
+        return stores.get(0);
+    }
+
+    // Δίνει στο sink κάθε κατάστημα του αρχείου μόλις διαβαστεί· επιστρέφει πόσα ήταν
+    public static int parseStores(Path file, Consumer<Store> sink) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return parseStores(in, sink);
+        } catch (IOException e) {
+            throw new IOException(file + ": " + e.getMessage(), e);
+        }
+    }
+
+    public static int parseStores(InputStream stream, Consumer<Store> sink) throws IOException {
+        JsonStream json = new JsonStream(stream);
+        int count = 0;
+        // Διαδοχικές τιμές στο πρώτο επίπεδο: αντικείμενα (JSON lines) ή πίνακες αντικειμένων
+        for (int c = json.peek(); c != -1; c = json.peek()) {
+            if (c == '[') {
+                json.expect('[');
+                if (json.peek() == ']') {
+                    json.expect(']');
+                    continue;
+                }
+                do {
+                    sink.accept(readStore(json));
+                    count++;
+                } while (json.nextInArray());
+            } else {
+                sink.accept(readStore(json));
+                count++;
+            }
+        }
+        return count;
+    }
 
-        JSONObject obj = new JSONObject(json);
+    private static Store readStore(JsonStream json) throws IOException {
         Store store = new Store();
+        List<Product> products = null;
+        double priceSum = 0;
+        boolean hasLat = false, hasLon = false, hasStars = false, hasVotes = false;
 
-        store.setStoreName(obj.getString("StoreName"));
-        store.setLatitude(obj.getDouble("Latitude"));
-        store.setLongitude(obj.getDouble("Longitude"));
-        store.setFoodCategory(obj.getString("FoodCategory"));
-        store.setStars(obj.getInt("Stars"));
-        store.setNoOfVotes(obj.getInt("NoOfVotes"));
-        store.setStoreLogo(obj.getString("StoreLogo"));
-
-        JSONArray productsJson = obj.getJSONArray("Products");
-        List<Product> products = new ArrayList<>();
-        double sum = 0;
-
-        for (int i = 0; i < productsJson.length(); i++) {
-            JSONObject p = productsJson.getJSONObject(i);
-            Product product = new Product();
-            product.setProductName(p.getString("ProductName"));
-            product.setProductType(p.getString("ProductType"));
-            product.setAvailableAmount(p.getInt("Available Amount"));
-            product.setPrice(p.getDouble("Price"));
-            sum += product.getPrice();
-            products.add(product);
+        json.expect('{');
+        int line = json.line;
+        if (json.peek() == '}') {
+            json.expect('}');
+            throw json.error("Κενό κατάστημα");
         }
+        do {
+            StringBuilder key = json.readKey();
+            if (eq(key, "StoreName")) {
+                store.setStoreName(json.readString());
+            } else if (eq(key, "Latitude")) {
+                store.setLatitude(json.readDouble());
+                hasLat = true;
+            } else if (eq(key, "Longitude")) {
+                store.setLongitude(json.readDouble());
+                hasLon = true;
+            } else if (eq(key, "FoodCategory")) {
+                store.setFoodCategory(json.readString());
+            } else if (eq(key, "Stars")) {
+                store.setStars((int) json.readDouble());
+                hasStars = true;
+            } else if (eq(key, "NoOfVotes")) {
+                store.setNoOfVotes((int) json.readDouble());
+                hasVotes = true;
+            } else if (eq(key, "StoreLogo")) {
+                store.setStoreLogo(json.readString());
+            } else if (eq(key, "Products")) {
+                products = new ArrayList<>();
+                json.expect('[');
+                if (json.peek() == ']') {
+                    json.expect(']');
+                } else {
+                    do {
+                        Product p = readProduct(json);
+                        priceSum += p.getPrice();
+                        products.add(p);
+                    } while (json.nextInArray());
+                }
+            } else {
+                json.skipValue();
+            }
+        } while (json.nextInObject());
 
+        // Όλα τα πεδία είναι υποχρεωτικά, και τα strings δεν μπορεί να είναι null
+        List<String> missing = new ArrayList<>();
+        if (store.getStoreName() == null) missing.add("StoreName");
+        if (!hasLat) missing.add("Latitude");
+        if (!hasLon) missing.add("Longitude");
+        if (store.getFoodCategory() == null) missing.add("FoodCategory");
+        if (!hasStars) missing.add("Stars");
+        if (!hasVotes) missing.add("NoOfVotes");
+        if (store.getStoreLogo() == null) missing.add("StoreLogo");
+        if (products == null) missing.add("Products");
+        if (!missing.isEmpty()) {
+            throw missingFields("το κατάστημα", missing, line);
+        }
         store.setProducts(products);
-
-        double avg = sum / products.size();
+        double avg = products.isEmpty() ? 0 : priceSum / products.size();
         if (avg <= 5) store.setPriceCategory("$");
         else if (avg <= 15) store.setPriceCategory("$$");
         else store.setPriceCategory("$$$");
         return store;
     }
+
+    private static Product readProduct(JsonStream json) throws IOException {
+        Product product = new Product();
+        boolean hasAmount = false, hasPrice = false;
+        json.expect('{');
+        int line = json.line;
+        if (json.peek() == '}') {
+            json.expect('}');
+            throw json.error("Κενό προϊόν");
+        }
+        do {
+            StringBuilder key = json.readKey();
+            if (eq(key, "ProductName")) {
+                product.setProductName(json.readString());
+            } else if (eq(key, "ProductType")) {
+                product.setProductType(json.readString());
+            } else if (eq(key, "Available Amount")) {
+                product.setAvailableAmount((int) json.readDouble());
+                hasAmount = true;
+            } else if (eq(key, "Price")) {
+                product.setPrice(json.readDouble());
+                hasPrice = true;
+            } else {
+                json.skipValue();
+            }
+        } while (json.nextInObject());
+        List<String> missing = new ArrayList<>();
+        if (product.getProductName() == null) missing.add("ProductName");
+        if (product.getProductType() == null) missing.add("ProductType");
+        if (!hasAmount) missing.add("Available Amount");
+        if (!hasPrice) missing.add("Price");
+        if (!missing.isEmpty()) {
+            throw missingFields("το προϊόν", missing, line);
+        }
+        return product;
+    }
+
+    private static IOException missingFields(String what, List<String> fields, int line) {
+        return new IOException("Λείπουν πεδία από " + what + " της γραμμής " + line + ": " + String.join(", ", fields));
+    }
+
+    private static boolean eq(StringBuilder key, String name) {
+        return key.length() == name.length() && name.contentEquals(key);
+    }
+
+    /**
+     * Ελάχιστος pull tokenizer JSON πάνω σε bytes UTF-8. Κρατά έναν buffer ανάγνωσης και έναν StringBuilder
+     * για τα strings, ώστε τα κλειδιά και οι αριθμοί να διαβάζονται χωρίς νέα αντικείμενα.
+     */
+    private static class JsonStream {
+        private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+        private final InputStream in;
+        private final byte[] buffer = new byte[8192];
+        private int pos, limit;
+        private int line = 1;
+        private final StringBuilder text = new StringBuilder();
+
+        JsonStream(InputStream in) {
+            this.in = in;
+        }
+
+        private int read() throws IOException {
+            if (pos == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[pos++] & 0xFF;
+        }
+
+        // Ο επόμενος χαρακτήρας που δεν είναι κενό, χωρίς να καταναλωθεί (-1 στο τέλος)
+        int peek() throws IOException {
+            while (true) {
+                int c = read();
+                if (c == -1) {
+                    return -1;
+                }
+                if (c == '\n') {
+                    line++;
+                } else if (c != ' ' && c != '\t' && c != '\r') {
+                    pos--;
+                    return c;
+                }
+            }
+        }
+
+        void expect(char expected) throws IOException {
+            int c = peek();
+            if (c != expected) {
+                throw error("Αναμενόταν '" + expected + "' αλλά βρέθηκε " + describe(c));
+            }
+            pos++;
+        }
+
+        // Μετά από μια τιμή αντικειμένου: true αν ακολουθεί ',' και false στο '}'
+        boolean nextInObject() throws IOException {
+            return next('}');
+        }
+
+        boolean nextInArray() throws IOException {
+            return next(']');
+        }
+
+        private boolean next(char close) throws IOException {
+            int c = peek();
+            pos++;
+            if (c == ',') {
+                return true;
+            }
+            if (c == close) {
+                return false;
+            }
+            throw error("Αναμενόταν ',' ή '" + close + "' αλλά βρέθηκε " + describe(c));
+        }
+
+        // Διαβάζει "κλειδί": και επιστρέφει τον (επαναχρησιμοποιούμενο) buffer με το κλειδί
+        StringBuilder readKey() throws IOException {
+            readText();
+            expect(':');
+            return text;
+        }
+
+        String readString() throws IOException {
+            if (peek() == 'n') {
+                readLiteral("null");
+                return null;
+            }
+            readText();
+            return text.toString();
+        }
+
+        private void readText() throws IOException {
+            expect('"');
+            text.setLength(0);
+            while (true) {
+                int c = read();
+                if (c == -1) {
+                    throw error("Ατελές string");
+                }
+                if (c == '"') {
+                    return;
+                }
+                if (c == '\\') {
+                    readEscape();
+                } else if (c < 0x80) {
+                    text.append((char) c);
+                } else {
+                    readUtf8(c);
+                }
+            }
+        }
+
+        private void readEscape() throws IOException {
+            int c = read();
+            switch (c) {
+                case '"', '\\', '/' -> text.append((char) c);
+                case 'b' -> text.append('\b');
+                case 'f' -> text.append('\f');
+                case 'n' -> text.append('\n');
+                case 'r' -> text.append('\r');
+                case 't' -> text.append('\t');
+                case 'u' -> {
+                    int value = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(read(), 16);
+                        if (digit < 0) {
+                            throw error("Μη έγκυρο \\u escape");
+                        }
+                        value = value * 16 + digit;
+                    }
+                    text.append((char) value);   // Τα surrogate pairs έρχονται ως δύο διαδοχικά \\u
+                }
+                default -> throw error("Μη έγκυρο escape: " + describe(c));
+            }
+        }
+
+        // Αποκωδικοποίηση ενός χαρακτήρα UTF-8 πολλών bytes
+        private void readUtf8(int first) throws IOException {
+            int extra, codePoint;
+            if ((first & 0xE0) == 0xC0) {
+                extra = 1;
+                codePoint = first & 0x1F;
+            } else if ((first & 0xF0) == 0xE0) {
+                extra = 2;
+                codePoint = first & 0x0F;
+            } else if ((first & 0xF8) == 0xF0) {
+                extra = 3;
+                codePoint = first & 0x07;
+            } else {
+                throw error("Μη έγκυρο UTF-8");
+            }
+            for (int i = 0; i < extra; i++) {
+                int c = read();
+                if ((c & 0xC0) != 0x80) {
+                    throw error("Μη έγκυρο UTF-8");
+                }
+                codePoint = (codePoint << 6) | (c & 0x3F);
+            }
+            text.appendCodePoint(codePoint);
+        }
+
+        /*
+         * Αριθμός JSON. Όταν έχει έως 15 σημαντικά ψηφία και κανέναν εκθέτη (π.χ. τιμές, συντεταγμένες),
+         * υπολογίζεται κατευθείαν ως ακέραιος / 10^k, που δίνει ακριβώς το ίδιο αποτέλεσμα με το
+         * Double.parseDouble. Διαφορετικά περνάμε από το Double.parseDouble.
+         */
+        double readDouble() throws IOException {
+            int c = peek();
+            if (c == '"') {
+                // Όπως το org.json, δεχόμαστε και αριθμούς γραμμένους ως string
+                readText();
+                try {
+                    return Double.parseDouble(text.toString().trim());
+                } catch (NumberFormatException e) {
+                    throw error("Μη έγκυρος αριθμός: \"" + text + "\"");
+                }
+            }
+            text.setLength(0);
+            boolean negative = false;
+            long mantissa = 0;
+            int digits = 0, fraction = 0;
+            boolean inFraction = false, simple = true;
+            while (true) {
+                c = read();
+                if (c >= '0' && c <= '9') {
+                    if (mantissa != 0 || c != '0') {
+                        digits++;
+                    }
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (inFraction) {
+                        fraction++;
+                    }
+                } else if (c == '-' && text.isEmpty()) {
+                    negative = true;
+                } else if (c == '.' && !inFraction) {
+                    inFraction = true;
+                } else if (c == 'e' || c == 'E' || c == '+' || c == '-') {
+                    simple = false;
+                } else {
+                    if (c != -1) {
+                        pos--;
+                    }
+                    break;
+                }
+                text.append((char) c);
+            }
+            if (text.isEmpty() || (text.length() == 1 && negative)) {
+                throw error("Αναμενόταν αριθμός αλλά βρέθηκε " + describe(c));
+            }
+            if (simple && digits <= 15 && fraction < POW10.length) {
+                double value = mantissa / POW10[fraction];
+                return negative ? -value : value;
+            }
+            try {
+                return Double.parseDouble(text.toString());
+            } catch (NumberFormatException e) {
+                throw error("Μη έγκυρος αριθμός: " + text);
+            }
+        }
+
+        // Προσπερνά μια τιμή (και ολόκληρα αντικείμενα/πίνακες) που δεν μας ενδιαφέρει
+        void skipValue() throws IOException {
+            int c = peek();
+            switch (c) {
+                case '"' -> readText();
+                case '{' -> {
+                    expect('{');
+                    if (peek() == '}') {
+                        pos++;
+                        return;
+                    }
+                    do {
+                        readText();
+                        expect(':');
+                        skipValue();
+                    } while (nextInObject());
+                }
+                case '[' -> {
+                    expect('[');
+                    if (peek() == ']') {
+                        pos++;
+                        return;
+                    }
+                    do {
+                        skipValue();
+                    } while (nextInArray());
+                }
+                case 't' -> readLiteral("true");
+                case 'f' -> readLiteral("false");
+                case 'n' -> readLiteral("null");
+                default -> readDouble();
+            }
+        }
+
+        private void readLiteral(String literal) throws IOException {
+            for (int i = 0; i < literal.length(); i++) {
+                if (read() != literal.charAt(i)) {
+                    throw error("Αναμενόταν " + literal);
+                }
+            }
+        }
+
+        IOException error(String message) {
+            return new IOException(message + " (γραμμή " + line + ")");
+        }
+
+        private static String describe(int c) {
+            return c == -1 ? "τέλος αρχείου" : "'" + (char) c + "'";
+        }
+    }
 }
@@ -0,0 +1,35 @@
+package com.example.dsd20252.model;
+
+/**
+ * Σύντομη μορφή καταστήματος για τα αποτελέσματα αναζήτησης, χωρίς τα προϊόντα.
+ * Το fields λέει ποια πεδία στάλθηκαν (εκτός από το όνομα, που υπάρχει πάντα)· τα υπόλοιπα είναι null/0.
+ * Για τις πλήρεις πληροφορίες ενός καταστήματος υπάρχει το typeID 16 (λεπτομέρειες με βάση το όνομα).
+ */
+public record StoreSummary(String storeName, double latitude, double longitude, String foodCategory,
+                           int stars, int noOfVotes, String priceCategory, String storeLogo, int fields) {
+
+    public static final int FIELD_LOCATION = 1;
+    public static final int FIELD_FOOD_CATEGORY = 1 << 1;
+    public static final int FIELD_STARS = 1 << 2;          // Αστέρια και πλήθος ψήφων
+    public static final int FIELD_PRICE_CATEGORY = 1 << 3;
+    public static final int FIELD_LOGO = 1 << 4;
+    public static final int DEFAULT_FIELDS = FIELD_LOCATION | FIELD_FOOD_CATEGORY | FIELD_STARS | FIELD_PRICE_CATEGORY;
+
+    static StoreSummary of(Store store, int fields) {
+        boolean location = (fields & FIELD_LOCATION) != 0;
+        boolean stars = (fields & FIELD_STARS) != 0;
+        return new StoreSummary(store.getStoreName(),
+                location ? store.getLatitude() : 0,
+                location ? store.getLongitude() : 0,
+                (fields & FIELD_FOOD_CATEGORY) != 0 ? store.getFoodCategory() : null,
+                stars ? store.getStars() : 0,
+                stars ? store.getNoOfVotes() : 0,
+                (fields & FIELD_PRICE_CATEGORY) != 0 ? store.getPriceCategory() : null,
+                (fields & FIELD_LOGO) != 0 ? store.getStoreLogo() : null,
+                fields);
+    }
+
+    boolean has(int field) {
+        return (fields & field) != 0;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.dsd20252.model;
+
+import java.io.Serializable;
+
+/**
+ * Το trace context που ταξιδεύει με κάθε Chunk: το αναγνωριστικό του trace (κοινό για όλα τα hops ενός
+ * αιτήματος), το span του αποστολέα, στο οποίο κρέμονται τα spans του παραλήπτη, και αν το αίτημα
+ * επιλέχθηκε στη δειγματοληψία (μόνο τότε καταγράφονται spans).
+ */
+public record TraceContext(long traceId, long spanId, boolean sampled) implements Serializable {
+
+    // Το ίδιο trace με άλλο γονικό span
+    TraceContext withSpan(long spanId) {
+        return new TraceContext(traceId, spanId, sampled);
+    }
+}
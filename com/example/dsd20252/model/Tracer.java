@@ -0,0 +1,201 @@
+package com.example.dsd20252.model;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracing των αιτημάτων από άκρη σε άκρη: κάθε διεργασία (client, Master, Worker) γράφει τα spans των
+ * αιτημάτων που επιλέχθηκαν στη δειγματοληψία σε δικό της αρχείο, σε μορφή Chrome Trace Event (JSON array
+ * με events "X"), που ανοίγει στο chrome://tracing ή στο ui.perfetto.dev. Τα αρχεία πολλών διεργασιών
+ * ανοίγουν μαζί αφού ενωθούν σε ένα array. Οι χρόνοι είναι σε μs από την εποχή του ρολογιού του συστήματος,
+ * ώστε να ευθυγραμμίζονται μεταξύ διεργασιών του ίδιου μηχανήματος.
+ * Κάθε trace έχει τη δική του γραμμή (tid) σε κάθε διεργασία, ώστε τα spans του να φωλιάζουν χρονικά·
+ * τα traceId/spanId/parentId είναι στα args.
+ *
+ * Η εγγραφή γίνεται από ξεχωριστό thread· αν η ουρά γεμίσει, τα spans απορρίπτονται αντί να
+ * καθυστερήσουν το αίτημα.
+ */
+class Tracer {
+    private static final int QUEUE_CAPACITY = 65536;
+
+    private static volatile boolean enabled = false;
+    private static boolean closed = false;      // Το αρχείο έκλεισε στον τερματισμό (υπό το lock του writer)
+    private static volatile double sampleRate = 0;
+    private static final long pid = ProcessHandle.current().pid();
+    // Μετατροπή του nanoTime σε μs από την εποχή
+    private static final long epochOffsetMicros = System.currentTimeMillis() * 1000 - System.nanoTime() / 1000;
+    private static final BlockingQueue<String> events = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final AtomicLong dropped = new AtomicLong();
+
+    private Tracer() {
+    }
+
+    // processName: όνομα της διεργασίας στο trace· file κενό = χωρίς καταγραφή· sampleRate: ποσοστό (0..1)
+    // των νέων αιτημάτων που ξεκινούν trace σε αυτή τη διεργασία
+    static void init(String processName, String file, double rate) {
+        sampleRate = rate;
+        if (file == null || file.isBlank()) {
+            return;
+        }
+        BufferedWriter writer;
+        try {
+            writer = Files.newBufferedWriter(Paths.get(file.trim()), StandardCharsets.UTF_8);
+            writer.write("[\n{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":" + pid
+                    + ",\"args\":{\"name\":\"" + escape(processName) + "\"}}");
+            writer.flush();
+        } catch (IOException e) {
+            System.err.println("Δεν ανοίγει το αρχείο trace " + file + ": " + e.getMessage());
+            return;
+        }
+        enabled = true;
+
+        Thread flusher = new Thread(() -> writeLoop(writer), "trace-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            enabled = false;
+            synchronized (writer) {
+                closed = true;
+                try {
+                    drain(writer);
+                    writer.write("\n]\n");
+                    writer.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            if (dropped.get() > 0) {
+                System.err.println("Tracing: απορρίφθηκαν " + dropped.get() + " spans (γεμάτη ουρά)");
+            }
+        }));
+        System.out.println("Tracing στο " + file.trim() + " (δειγματοληψία " + rate + ")");
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Το trace ενός αιτήματος που φτάνει σε αυτή τη διεργασία από τον χρήστη: συνεχίζει το trace του
+     * αποστολέα αν υπάρχει, αλλιώς ξεκινά νέο με πιθανότητα sampleRate. Το spanId του αποτελέσματος είναι
+     * νέο span της διεργασίας για όλο το αίτημα (καταγράφεται με το requestSpan).
+     * null όταν το αίτημα δεν καταγράφεται.
+     */
+    static TraceContext begin(TraceContext incoming) {
+        if (incoming != null) {
+            return incoming.withSpan(newId());
+        }
+        if (!enabled || sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return null;
+        }
+        return new TraceContext(newId(), newId(), true);
+    }
+
+    static long newId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return id;
+    }
+
+    static long now() {
+        return System.nanoTime();
+    }
+
+    // Νέο span, παιδί του span του trace· args σε ζεύγη όνομα, τιμή
+    static void span(String name, TraceContext parent, long startNanos, long endNanos, Object... args) {
+        if (parent == null) {
+            return;
+        }
+        record(name, parent.traceId(), newId(), parent.spanId(), parent.sampled(), startNanos, endNanos, args);
+    }
+
+    // Το span της διεργασίας για όλο το αίτημα (το trace.spanId() που έδωσε το begin)
+    static void requestSpan(String name, TraceContext trace, long parentId, long startNanos, long endNanos, Object... args) {
+        if (trace == null) {
+            return;
+        }
+        record(name, trace.traceId(), trace.spanId(), parentId, trace.sampled(), startNanos, endNanos, args);
+    }
+
+    private static void record(String name, long traceId, long spanId, long parentId, boolean sampled,
+                               long startNanos, long endNanos, Object[] args) {
+        if (!enabled || !sampled) {
+            return;
+        }
+        StringBuilder event = new StringBuilder(256);
+        event.append("{\"name\":\"").append(escape(name))
+                .append("\",\"ph\":\"X\",\"ts\":").append(epochOffsetMicros + startNanos / 1000)
+                .append(",\"dur\":").append(String.format(Locale.ROOT, "%.3f", Math.max(0, endNanos - startNanos) / 1000.0))
+                .append(",\"pid\":").append(pid)
+                .append(",\"tid\":").append(traceId >>> 44)
+                .append(",\"args\":{\"traceId\":\"").append(Long.toHexString(traceId))
+                .append("\",\"spanId\":\"").append(Long.toHexString(spanId))
+                .append("\",\"parentId\":\"").append(Long.toHexString(parentId)).append('"');
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            event.append(",\"").append(escape(String.valueOf(args[i]))).append("\":\"")
+                    .append(escape(String.valueOf(args[i + 1]))).append('"');
+        }
+        event.append("}}");
+        if (!events.offer(event.toString())) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private static void writeLoop(BufferedWriter writer) {
+        try {
+            while (true) {
+                String event = events.take();
+                synchronized (writer) {
+                    if (closed) {
+                        return;
+                    }
+                    writer.write(",\n");
+                    writer.write(event);
+                    drain(writer);
+                    writer.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Σφάλμα εγγραφής trace: " + e.getMessage());
+            enabled = false;
+        }
+    }
+
+    private static void drain(BufferedWriter writer) throws IOException {
+        List<String> batch = new ArrayList<>();
+        events.drainTo(batch);
+        for (String event : batch) {
+            writer.write(",\n");
+            writer.write(event);
+        }
+    }
+
+    private static String escape(String s) {
+        StringBuilder out = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
@@ -3,21 +3,71 @@ package com.example.dsd20252.model;
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 
 /**
  * Κλάση Worker που εκπροσωπεί έναν κόμβο επεξεργασίας δεδομένων.
  * Λαμβάνει αιτήματα από τον Master, διαχειρίζεται καταστήματα και προϊόντα, εκτελεί αγορές,
  * και απαντά σε αιτήματα στατιστικών ή αναζητήσεων.
+ * Δεν υπάρχει καθολικό κλείδωμα: τα ευρετήρια είναι ταυτόχρονα (concurrent), οι αλλαγές στη δομή ενός
+ * καταστήματος (προϊόντα, βαθμολογία) κλειδώνουν μόνο το συγκεκριμένο Store, και οι αγορές γίνονται με CAS
+ * στα ποσά του Product. Οι αναζητήσεις και τα στατιστικά δεν κλειδώνουν ποτέ.
+ * Με replication κάθε κατάστημα υπάρχει σε περισσότερους Workers (holders). Ο Master στέλνει τις εγγραφές
+ * στον primary, που τις εφαρμόζει και τις προωθεί στα αντίγραφα. Στις αναγνώσεις κάθε Worker απαντά μόνο
+ * για όσα καταστήματα είναι ο πρώτος διαθέσιμος holder, ώστε κανένα κατάστημα να μη μετρηθεί δύο φορές.
+ * Κάθε εγγραφή που εφαρμόστηκε γράφεται στο WriteAheadLog, και στην εκκίνηση η κατάσταση ανακτάται από
+ * το τελευταίο snapshot και το log.
  */
 public class Worker {
     private static int port;
-    private static List<Store> storeList = Collections.synchronizedList(new ArrayList<>());
+    private static String selfId;   // host:port όπως μας γνωρίζει ο Master (βλ. holders)
+    private static PersistentConnection reducerConnection;  // Μόνιμη σύνδεση προς το reducer port του Master
+    // Εκτελεστής για την επεξεργασία κάθε Chunk· οι συνδέσεις του Master και των primary διαβάζονται εκτός
+    // του pool (tryStartConnection, βλ. ServerExecutor)
+    private static ServerExecutor requestExecutor;
+    private static WriteLanes writeLanes;       // Οι εγγραφές, σειριακά ανά κατάστημα
+    // Συνδέσεις προς άλλους Workers (κλειδί host:port), για τη μετακίνηση καταστημάτων και τα αντίγραφα
+    private static final Map<String, PersistentConnection> peerConnections = new ConcurrentHashMap<>();
+    private static final AtomicInteger openConnections = new AtomicInteger();   // Συνδέσεις Master/Workers προς εμάς
+    static final double SEARCH_RADIUS_KM = 5;
+    private static SpatialIndex spatialIndex = new SpatialIndex(0.05);  // Χωρικό ευρετήριο των καταστημάτων
+    // Ευρετήρια με κλειδί το κανονικοποιημένο όνομα (βλ. nameKey): κατάστημα και προϊόντα κάθε καταστήματος
+    private static final Map<String, Store> storesByName = new ConcurrentHashMap<>();
+    private static final Map<String, Map<String, Product>> productsByStore = new ConcurrentHashMap<>();
+    // Οι Workers που κρατούν κάθε κατάστημα, με τη σειρά του Master (κενή λίστα χωρίς replication)
+    private static final Map<String, List<String>> storeHolders = new ConcurrentHashMap<>();
+
+    // Πωλήσεις που θα ενημερώνει στον Master όταν ζητηθούν. Ενημερώνονται σε κάθε αγορά (και διορθώνονται
+    // όταν αφαιρείται προϊόν), ώστε τα στατιστικά να μη σαρώνουν όλα τα καταστήματα. Χωρίζονται ανά λίστα
+    // holders, για να στέλνουμε μόνο όσα καταστήματα εξυπηρετεί αυτός ο Worker.
+    private static final Map<List<String>, SalesTotals> salesByHolders = new ConcurrentHashMap<>();
+
+    private static WriteAheadLog wal;   // null όταν το walDir είναι κενό
+    // Οι εγγραφές παίρνουν το read lock (πολλές μαζί), το snapshot το write lock ώστε να δει σταθερή κατάσταση
+    private static final ReadWriteLock mutationGate = new ReentrantReadWriteLock();
+    // Οι εγγραφές ενός καταστήματος φτάνουν εδώ ήδη σειριακά από τη λωρίδα τους (WriteLanes)· το lock κρατά
+    // εφαρμογή, καταγραφή και προώθηση μαζί, ώστε το WAL και η (μία) σύνδεση προς κάθε αντίγραφο να βλέπουν
+    // τη σειρά του primary και απέναντι σε εγγραφές που δεν περνούν από λωρίδα (ανάκτηση, μετακίνηση).
+    private static final Object[] writeLocks = new Object[64];
+    static {
+        for (int i = 0; i < writeLocks.length; i++) {
+            writeLocks[i] = new Object();
+        }
+    }
 
-    // Πωλήσεις που θα ενημερώνει στον Master όταν ζητηθούν
-    //private static final Map<String, Integer> salesByProduct = new HashMap<>();
-    //private static final Map<String, Integer> salesByStoreType = new HashMap<>();
-   // private static final Map<String, Integer> salesByProductCategory = new HashMap<>();
+    private static class SalesTotals {
+        final Map<String, Integer> byProduct = new ConcurrentHashMap<>();
+        final Map<String, Integer> byStoreType = new ConcurrentHashMap<>();
+        final Map<String, Integer> byProductCategory = new ConcurrentHashMap<>();
+    }
 
     public static void main(String[] args) {
         init();
@@ -30,339 +80,863 @@ public class Worker {
             Properties prop = new Properties();
             prop.load(new FileInputStream(configFile));
             port = Integer.parseInt(prop.getProperty("serverPort"));
+            // Πρέπει να ταιριάζει με το hostN του master.config
+            selfId = prop.getProperty("workerHost", "localhost").trim() + ":" + port;
+            String reducerHost = prop.getProperty("reducerHost", prop.getProperty("masterHost"));
+            int reducerPort = Integer.parseInt(prop.getProperty("reducerPort"));
+            reducerConnection = new PersistentConnection(reducerHost, reducerPort);
+            Metrics.init(selfId, Integer.parseInt(prop.getProperty("metricsPort", "0").trim()));
+            Metrics.gauge("dsd_open_connections", "server=\"worker\"", openConnections::get);
+            Metrics.gauge("dsd_stores", "", storesByName::size);
+            // Ο Worker δεν ξεκινά δικά του traces: καταγράφει μόνο όσα του έρχονται με δειγματοληψία
+            Tracer.init("worker " + selfId, prop.getProperty("traceFile", ""), 0);
+            requestExecutor = ServerExecutor.fromConfig("requests", prop);
+            writeLanes = new WriteLanes("writes", Integer.parseInt(prop.getProperty("writeLanes", "8").trim()),
+                    Integer.parseInt(prop.getProperty("writeLaneQueue", "1000").trim()));
+            ServerExecutor.startStatsReporter(prop);
+            // Μέγεθος κελιού (σε μοίρες) του χωρικού ευρετηρίου
+            spatialIndex = new SpatialIndex(Double.parseDouble(prop.getProperty("searchCellDegrees", "0.05")));
+
+            // Durability: ανάκτηση από το δίσκο πριν δεχτούμε αιτήματα
+            String walDir = prop.getProperty("walDir", "wal-" + port).trim();
+            if (!walDir.isEmpty()) {
+                wal = new WriteAheadLog(Path.of(walDir), prop.getProperty("walFsync", "group").trim(),
+                        Long.parseLong(prop.getProperty("walSyncMillis", "100").trim()));
+                Path snapshot = wal.latestSnapshot();
+                if (snapshot != null) {
+                    long start = System.nanoTime();
+                    try {
+                        int stores = loadSnapshot(snapshot);
+                        System.out.println("Snapshot: " + stores + " καταστήματα σε "
+                                + (System.nanoTime() - start) / 1_000_000 + " ms");
+                    } catch (StreamCorruptedException e) {
+                        // Ξεκινάμε χωρίς αυτό: ο Master ξαναστέλνει τα καταστήματα από τα αντίγραφα (βλ. Master.recover)
+                        System.err.println("Αγνοείται το snapshot: " + e.getMessage());
+                    }
+                }
+                wal.replay(Worker::apply);
+                startSnapshotter(Integer.parseInt(prop.getProperty("snapshotSeconds", "60").trim()));
+            }
             System.out.println("Worker listening on port " + port);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    // Περιμένει συνδέσεις από τον Master και ξεκινά thread για κάθε μία
+    // Περιμένει συνδέσεις από τον Master (και τους primary των αντιγράφων) και ξεκινά τον βρόχο ανάγνωσής τους
     private static void listenForMaster() {
         try (ServerSocket serverSocket = new ServerSocket(port)) {
             while (true) {
                 Socket masterSocket = serverSocket.accept();
-                new Thread(() -> handleRequest(masterSocket)).start();
+                if (!requestExecutor.tryStartConnection(() -> handleRequest(masterSocket))) {
+                    System.err.println("Απόρριψη σύνδεσης, ο εκτελεστής είναι γεμάτος: " + requestExecutor);
+                    try {
+                        masterSocket.close();
+                    } catch (IOException ignored) {
+                    }
+                }
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    // Ο Master (ή ο primary, για τα αντίγραφα) κρατά ανοιχτή τη σύνδεση και στέλνει πολλά Chunks.
+    // Οι αναγνώσεις εκτελούνται στον requestExecutor ώστε μια αργή να μην καθυστερεί τις επόμενες· αν ο
+    // εκτελεστής είναι γεμάτος, εκτελούνται επί τόπου και ο αποστολέας επιβραδύνεται (backpressure).
+    // Οι εγγραφές πηγαίνουν στη λωρίδα του καταστήματός τους (WriteLanes) και εκτελούνται με τη σειρά
+    // που διαβάστηκαν, ώστε τα αντίγραφα να εφαρμόζουν τις εγγραφές με τη σειρά του primary.
     private static void handleRequest(Socket socket) {
-        try (ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) {
-            Chunk chunk = (Chunk) in.readObject();
-            System.out.println("Received Chunk (typeID=" + chunk.getTypeID() + ")");
-
-            switch (chunk.getTypeID()) {
-                case 1 -> handleInsertStore(chunk);
-                case 2 -> handleUpdateAvailability(chunk);
-                case 3 -> handleAddProduct(chunk);
-                case 4 -> handleRemoveProduct(chunk);
-                case 5 -> handleSalesByProduct(chunk, socket);
-                case 6 -> handleSalesByStoreType(chunk,socket);
-                case 7 -> handleSalesByProductCategory(chunk, socket);
-                case 10 -> handleSearchRequest(chunk);
-                case 11 -> handleBuyRequest(chunk);
-                case 12 -> handleRating(chunk);
-                default -> System.out.println("Άγνωστο typeID: " + chunk.getTypeID());
-            }
-
-        } catch (IOException | ClassNotFoundException e) {
+        openConnections.incrementAndGet();
+        try (socket; ChunkInputStream in = new ChunkInputStream(socket.getInputStream(), false)) {
+            while (true) {
+                Chunk chunk;
+                try {
+                    chunk = in.readChunk();
+                } catch (EOFException e) {
+                    return; // Ο Master έκλεισε τη σύνδεση
+                }
+                long received = System.nanoTime();
+                if (isWrite(chunk.getTypeID())) {
+                    String store = storeNameOf(chunk);
+                    if (store.isEmpty()) {
+                        writeLanes.submitToAll(() -> handleChunk(chunk, received));  // Μαζική εισαγωγή
+                    } else {
+                        writeLanes.submit(nameKey(store), () -> handleChunk(chunk, received));
+                    }
+                } else if (!requestExecutor.trySubmit(() -> handleChunk(chunk, received))) {
+                    handleChunk(chunk, received);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            openConnections.decrementAndGet();
+        }
+    }
+
+    private static boolean isWrite(int typeID) {
+        return switch (typeID) {
+            case 0, 5, 6, 7, 10, 16, 30 -> false;   // heartbeat και αναγνώσεις
+            default -> true;
+        };
+    }
+
+    private static void handleChunk(Chunk chunk, long receivedNanos) {
+        int typeID = chunk.getTypeID();
+        if (typeID == 0) {
+            return; // heartbeat του Master
+        }
+        System.out.println("Received Chunk (typeID=" + typeID + ")");
+        long start = System.nanoTime();
+        Metrics.count("dsd_requests_total", typeID);
+        Metrics.record("queue", typeID, start - receivedNanos);
+        // Tracing: τα spans της επεξεργασίας (lock_wait, αντίγραφα, απάντηση) κρέμονται από το worker.process
+        TraceContext incoming = chunk.getTrace();
+        TraceContext trace = incoming == null ? null : Tracer.begin(incoming);
+        chunk.setTrace(trace);
+        Tracer.span("worker.queue", incoming, receivedNanos, start, "worker", selfId);
+        try {
+            dispatch(chunk);
+        } finally {
+            long end = System.nanoTime();
+            Metrics.record("processing", typeID, end - start);
+            Tracer.requestSpan("worker.process", trace, incoming == null ? 0 : incoming.spanId(), start, end,
+                    "worker", selfId, "typeID", typeID, "from", chunk.getUserID());
+        }
+    }
+
+    private static void dispatch(Chunk chunk) {
+        switch (chunk.getTypeID()) {
+            case 5 -> handleSalesByProduct(chunk);
+            case 6 -> handleSalesByStoreType(chunk);
+            case 7 -> handleSalesByProductCategory(chunk);
+            case 10 -> handleSearchRequest(chunk);
+            case 16 -> handleStoreDetails(chunk);
+            case 17 -> handleCheckout(chunk);
+            case 15 -> handleMigratedStore(chunk);
+            case 30 -> sendResultsToMaster(chunk, 30, Metrics.render());
+            default -> handleWrite(chunk);
+        }
+    }
+
+    // Εγγραφή: εφαρμογή, καταγραφή στο WAL και προώθηση στα αντίγραφα, με τη σειρά της λωρίδας του
+    // καταστήματος. Καταγράφεται και προωθείται το αποτέλεσμα (για αγορές η νέα κατάσταση των προϊόντων,
+    // typeID 19), όχι το αίτημα, ώστε η επανάληψη να μη ξανακρίνει το απόθεμα. Δεν περιμένει το fsync: η
+    // λωρίδα συνεχίζει με την επόμενη εγγραφή, ώστε ένα fsync να καλύπτει όσες εγγραφές μαζευτούν από όλες τις
+    // λωρίδες. Επιστρέφει τον αύξοντα αριθμό της στο WAL (0 αν δεν καταγράφηκε), για όσες απαντήσεις πρέπει
+    // να σταλούν αφού γίνει durable (βλ. whenDurable).
+    static long handleWrite(Chunk chunk) {
+        long seq = 0;
+        // Η μαζική εισαγωγή αφορά πολλά καταστήματα: εκτελείται αποκλειστικά, όπως το snapshot
+        boolean bulk = chunk.getTypeID() == 14;
+        Lock gate = bulk ? mutationGate.writeLock() : mutationGate.readLock();
+        long waitStart = System.nanoTime();
+        gate.lock();
+        try {
+            Object storeLock = bulk ? mutationGate : writeLocks[Math.floorMod(nameKey(storeNameOf(chunk)).hashCode(), writeLocks.length)];
+            synchronized (storeLock) {
+                long locked = System.nanoTime();
+                Metrics.record("lock_wait", chunk.getTypeID(), locked - waitStart);
+                Tracer.span("worker.lock_wait", chunk.getTrace(), waitStart, locked);
+                Chunk record = apply(chunk);
+                if (record == null) {
+                    return 0;
+                }
+                if (wal != null) {
+                    seq = wal.append(record);
+                }
+                replicate(record);
+            }
+        } finally {
+            gate.unlock();
+        }
+        return seq;
+    }
+
+    // Εκτελεί την ενέργεια (απάντηση προς τον Master) όταν η εγγραφή seq γίνει durable· χωρίς WAL αμέσως
+    private static void whenDurable(Chunk chunk, long seq, Runnable action) {
+        if (wal == null) {
+            action.run();
+            return;
+        }
+        long syncStart = System.nanoTime();
+        wal.whenDurable(seq, () -> {
+            Tracer.span("worker.wal_sync", chunk.getTrace(), syncStart, System.nanoTime());
+            action.run();
+        });
+    }
+
+    // Κατάστημα που μετακινήθηκε σε αυτόν τον Worker (typeID 15, από τον παλιό holder): αφού γίνει durable,
+    // επιβεβαιώνεται στον Master με το segmentID της μετακίνησης, ώστε να αλλάξει το ring μόνο όταν το
+    // κατάστημα υπάρχει σε όλους τους νέους holders.
+    private static void handleMigratedStore(Chunk chunk) {
+        long seq = handleWrite(chunk);
+        whenDurable(chunk, seq, () -> sendResultsToMaster(chunk, 15, storeNameOf(chunk)));
+    }
+
+    // Εφαρμόζει μια εγγραφή (και κατά την ανάκτηση από το WAL). Επιστρέφει το Chunk που περιγράφει την αλλαγή,
+    // για το log και τα αντίγραφα, ή null αν δεν άλλαξε τίποτα (π.χ. αγορά χωρίς απόθεμα).
+    private static Chunk apply(Chunk chunk) {
+        boolean applied = switch (chunk.getTypeID()) {
+            case 1, 15 -> handleInsertStore(chunk);
+            case 14 -> handleInsertStores(chunk);
+            case 2 -> handleUpdateAvailability(chunk);
+            case 3 -> handleAddProduct(chunk);
+            case 4 -> handleRemoveProduct(chunk);
+            case 11, 17 -> {
+                // Στο log και στα αντίγραφα πηγαίνει η κατάσταση των προϊόντων μετά την αγορά, όχι η αγορά:
+                // ένα αντίγραφο δεν ξαναελέγχει το απόθεμα, ώστε να μην απορρίψει αγορά που δέχτηκε ο primary
+                boolean ok = chunk.getTypeID() == 11 ? handleBuyRequest(chunk) : handleCartRequest(chunk);
+                if (ok) {
+                    chunk = productStateOf(chunk);
+                }
+                yield ok;
+            }
+            case 19 -> handleProductState(chunk);
+            case 12 -> handleRating(chunk);
+            case 13 -> {
+                chunk = handleMigrateStore(chunk);
+                yield chunk != null;
+            }
+            default -> {
+                System.out.println("Άγνωστο typeID: " + chunk.getTypeID());
+                yield false;
+            }
+        };
+        return applied ? chunk : null;
+    }
+
+    private static String storeNameOf(Chunk chunk) {
+        Object data = chunk.getData();
+        if (data instanceof Store store) {
+            return store.getStoreName();
+        }
+        if (data instanceof BuyRequest req) {
+            return req.getStoreName();
+        }
+        if (data instanceof CartRequest cart) {
+            return cart.getStoreName();
+        }
+        if (data instanceof Map<?, ?> map && map.get("storeName") instanceof String name) {
+            return name;
+        }
+        return "";
+    }
+
+    // Περιοδικό snapshot (snapshotSeconds, 0 = ποτέ), ώστε το log να μη μεγαλώνει απεριόριστα
+    private static void startSnapshotter(int seconds) {
+        if (seconds <= 0) {
+            return;
+        }
+        Thread snapshotter = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(seconds * 1000L);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                takeSnapshot();
+            }
+        }, "snapshotter");
+        snapshotter.setDaemon(true);
+        snapshotter.start();
+    }
+
+    // Τα καταστήματα κωδικοποιούνται ενώ οι εγγραφές είναι σταματημένες (μόνο στη μνήμη, γρήγορα)·
+    // η εγγραφή στο δίσκο γίνεται μετά, χωρίς να τις καθυστερεί
+    private static void takeSnapshot() {
+        try {
+            long segment;
+            List<SnapshotFile.Entry> entries;
+            // Οι εγγραφές σταματούν μόνο για το rotate και τα αντίγραφα· η κωδικοποίηση γίνεται μετά
+            mutationGate.writeLock().lock();
+            try {
+                if (!wal.hasNewRecords()) {
+                    return;
+                }
+                segment = wal.rotate();
+                entries = SnapshotFile.capture(storesByName.values(),
+                        store -> storeHolders.getOrDefault(nameKey(store.getStoreName()), List.of()));
+            } finally {
+                mutationGate.writeLock().unlock();
+            }
+            wal.writeSnapshot(segment, SnapshotFile.encode(entries));
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
-    // Εισαγωγή νέου καταστήματος στη μνήμη του worker
-    private static void handleInsertStore(Chunk chunk) {
+
+    // Ο primary προωθεί την εγγραφή στους υπόλοιπους holders που δεν είναι εκτός λειτουργίας, και σε όσους
+    // προηγούνται αν ξανασυγχρονίζονται μετά από επαναφορά (ο Master δεν τους βάζει στο down).
+    // Τα αντίγραφα τη λαμβάνουν με userID "replica" και δεν την προωθούν ξανά.
+    private static void replicate(Chunk chunk) {
+        List<String> holders = chunk.getHolders();
+        if (holders == null || "replica".equals(chunk.getUserID())) {
+            return;
+        }
+        Set<String> down = downOf(chunk);
+        for (String replica : holders) {
+            if (replica.equals(selfId) || down.contains(replica)) {
+                continue;
+            }
+            Chunk copy = new Chunk("replica", chunk.getTypeID(), chunk.getData());
+            copy.setSegmentID(chunk.getSegmentID());
+            copy.setHolders(holders);
+            copy.setTrace(chunk.getTrace());
+            long sendStart = System.nanoTime();
+            try {
+                peerConnection(replica).send(copy);
+                Tracer.span("worker.replicate", chunk.getTrace(), sendStart, System.nanoTime(), "replica", replica);
+            } catch (IOException e) {
+                // Ο Master θα εντοπίσει τον Worker με το heartbeat και θα τον ξανασυγχρονίσει όταν επανέλθει
+                System.err.println("Αποτυχία αντιγραφής (typeID=" + chunk.getTypeID() + ") στον Worker " + replica);
+            }
+        }
+    }
+
+    private static PersistentConnection peerConnection(String id) {
+        return peerConnections.computeIfAbsent(id, k -> {
+            int colon = k.lastIndexOf(':');
+            return new PersistentConnection(k.substring(0, colon), Integer.parseInt(k.substring(colon + 1)));
+        });
+    }
+
+    // Αν αυτός ο Worker απαντά για καταστήματα με αυτούς τους holders: είναι ο πρώτος που δεν είναι εκτός λειτουργίας
+    private static boolean serves(List<String> holders, Set<String> down) {
+        for (String holder : holders) {
+            if (!down.contains(holder)) {
+                return holder.equals(selfId);
+            }
+        }
+        return true;
+    }
+
+    private static Set<String> downOf(Chunk chunk) {
+        return chunk.getDown() == null ? Set.of() : new HashSet<>(chunk.getDown());
+    }
+
+    // Εισαγωγή νέου καταστήματος στη μνήμη του worker. Αν υπάρχει ήδη κατάστημα με το ίδιο όνομα, αντικαθίσταται.
+    private static boolean handleInsertStore(Chunk chunk) {
         Store store = (Store) chunk.getData();
-        synchronized (storeList) {
-            storeList.add(store);
-            System.out.println("Κατάστημα '" + store.getStoreName() + "' αποθηκεύτηκε στον Worker.");
+        insertStore(store, chunk.getHolders() == null ? List.of() : List.copyOf(chunk.getHolders()));
+        System.out.println("Κατάστημα '" + store.getStoreName() + "' αποθηκεύτηκε στον Worker.");
+        return true;
+    }
+
+    // Μαζική εισαγωγή καταστημάτων (typeID 14), όλα με τους ίδιους holders
+    private static boolean handleInsertStores(Chunk chunk) {
+        List<Store> stores = (List<Store>) chunk.getData();
+        List<String> holders = chunk.getHolders() == null ? List.of() : List.copyOf(chunk.getHolders());
+        for (Store store : stores) {
+            insertStore(store, holders);
+        }
+        System.out.println("Αποθηκεύτηκαν " + stores.size() + " καταστήματα στον Worker.");
+        return !stores.isEmpty();
+    }
+
+    // Προσθέτει το κατάστημα στα ευρετήρια και τα συγκεντρωτικά (και κατά τη φόρτωση του snapshot)
+    private static void insertStore(Store store, List<String> holders) {
+        String key = nameKey(store.getStoreName());
+        Map<String, Product> products = indexProducts(store);
+
+        storesByName.compute(key, (k, old) -> {
+            if (old != null) {
+                spatialIndex.remove(old);
+                for (Product p : old.getProducts()) {
+                    recordSales(old, p, -p.getSoldAmount());
+                }
+            }
+            storeHolders.put(key, holders);
+            productsByStore.put(key, products);
+            spatialIndex.add(store);
+            // Ένα κατάστημα μπορεί να έρθει με ήδη καταγεγραμμένες πωλήσεις
+            for (Product p : store.getProducts()) {
+                recordSales(store, p, p.getSoldAmount());
+            }
+            return store;
+        });
+    }
+
+    // Η λίστα προϊόντων διαβάζεται από αναζητήσεις/στατιστικά χωρίς κλείδωμα· επιστρέφει το ευρετήριό της
+    private static Map<String, Product> indexProducts(Store store) {
+        store.setProducts(new CopyOnWriteArrayList<>(store.getProducts()));
+        Map<String, Product> products = new ConcurrentHashMap<>();
+        for (Product p : store.getProducts()) {
+            products.put(nameKey(p.getProductName()), p);
+        }
+        return products;
+    }
+
+    // Φόρτωση snapshot στην εκκίνηση: ο Worker είναι ακόμη άδειος, οπότε τα ευρετήρια γεμίζουν απευθείας
+    // και το χωρικό ευρετήριο μαζικά στο τέλος
+    private static int loadSnapshot(Path snapshot) throws IOException {
+        List<Store> loaded = new ArrayList<>();
+        int count = SnapshotFile.load(snapshot, (store, holders) -> {
+            String key = nameKey(store.getStoreName());
+            productsByStore.put(key, indexProducts(store));
+            storeHolders.put(key, holders);
+            storesByName.put(key, store);
+            SalesTotals totals = salesByHolders.computeIfAbsent(holders, h -> new SalesTotals());
+            for (Product p : store.getProducts()) {
+                recordSales(totals, store, p, p.getSoldAmount());
+            }
+            loaded.add(store);
+        });
+        spatialIndex.addAll(loaded);
+        return count;
+    }
+    // Αντιγραφή/μετακίνηση καταστήματος σε άλλους Workers (όταν αλλάζουν τα μέλη του hash ring ή επανέρχεται
+    // Worker). Το κατάστημα στέλνεται ως εισαγωγή (typeID 1) σε κάθε target με όλη την τρέχουσα κατάστασή του,
+    // και εδώ είτε κρατιέται με τους νέους holders (keep) είτε αφαιρείται. Επιστρέφει την τοπική αλλαγή
+    // (χωρίς targets) για το log, ώστε η ανάκτηση να μην ξαναστείλει τίποτα.
+    private static Chunk handleMigrateStore(Chunk chunk) {
+        Map<String, Object> data = (Map<String, Object>) chunk.getData();
+        String storeName = (String) data.get("storeName");
+        List<String> targets = (List<String>) data.get("targets");
+        List<String> holders = List.copyOf((List<String>) data.get("holders"));
+        boolean keep = (boolean) data.get("keep");
+
+        String key = nameKey(storeName);
+        Store store = storesByName.get(key);
+        if (store == null) {
+            System.out.println("Δεν βρέθηκε κατάστημα για μετακίνηση: " + storeName);
+            return null;
+        }
+
+        boolean sent = true;
+        for (String target : targets) {
+            Chunk insert = new Chunk("replica", 15, store);
+            insert.setSegmentID(chunk.getSegmentID());
+            insert.setHolders(holders);
+            try {
+                peerConnection(target).send(insert);
+                System.out.println("Το κατάστημα '" + storeName + "' αντιγράφηκε στον Worker " + target);
+            } catch (IOException e) {
+                System.err.println("Αποτυχία αντιγραφής του '" + storeName + "' στον Worker " + target);
+                sent = false;
+            }
+        }
+
+        Map<String, Object> effect = new HashMap<>(data);
+        effect.put("targets", List.of());
+        effect.put("keep", keep || !sent);
+        synchronized (store) {
+            if (keep || !sent) {
+                // Δεν χάνουμε το κατάστημα αν κάποια αποστολή απέτυχε: παραμένει σε αυτόν τον Worker
+                retag(key, store, holders);
+                return new Chunk("worker", 13, effect);
+            }
+            storesByName.remove(key);
+            productsByStore.remove(key);
+            spatialIndex.remove(store);
+            for (Product p : store.getProducts()) {
+                recordSales(store, p, -p.getSoldAmount());
+            }
+            storeHolders.remove(key);
+        }
+        return new Chunk("worker", 13, effect);
+    }
+
+    // Αλλάζει τους holders ενός καταστήματος, μεταφέροντας τις πωλήσεις του στα αντίστοιχα συγκεντρωτικά
+    private static void retag(String key, Store store, List<String> holders) {
+        for (Product p : store.getProducts()) {
+            recordSales(store, p, -p.getSoldAmount());
+        }
+        storeHolders.put(key, holders);
+        for (Product p : store.getProducts()) {
+            recordSales(store, p, p.getSoldAmount());
         }
     }
+
     // Ενημέρωση ποσότητας διαθέσιμου προϊόντος
-    private static void handleUpdateAvailability(Chunk chunk) {
+    private static boolean handleUpdateAvailability(Chunk chunk) {
         Map<String, Object> data = (Map<String, Object>) chunk.getData();
         String storeName = (String) data.get("storeName");
         String productName = (String) data.get("productName");
         int newAmount = (int) data.get("newAmount");
 
-        synchronized (storeList) {
-            for (Store store : storeList) {
-                if (store.getStoreName().equalsIgnoreCase(storeName)) {
-                    for (Product p : store.getProducts()) {
-                        if (p.getProductName().equalsIgnoreCase(productName)) {
-                            p.setAvailableAmount(newAmount);
-                            System.out.println("Ενημερώθηκε ποσότητα '" + productName + "' στο κατάστημα '" + storeName + "' -> " + newAmount);
-                            return;
-                        }
-                    }
-                }
-            }
+        Product p = findProduct(storeName, productName);
+        if (p != null) {
+            p.setAvailableAmount(newAmount);
+            System.out.println("Ενημερώθηκε ποσότητα '" + productName + "' στο κατάστημα '" + storeName + "' -> " + newAmount);
+            return true;
         }
+        return false;
     }
     // Προσθήκη νέου προϊόντος σε κατάστημα
-    private static void handleAddProduct(Chunk chunk) {
+    private static boolean handleAddProduct(Chunk chunk) {
         Map<String, Object> data = (Map<String, Object>) chunk.getData();
         String storeName = (String) data.get("storeName");
         Product newProduct = (Product) data.get("product");
 
-        synchronized (storeList) {
-            for (Store store : storeList) {
-                if (store.getStoreName().equalsIgnoreCase(storeName)) {
-                    store.getProducts().add(newProduct);
-                    System.out.println("Προστέθηκε νέο προϊόν '" + newProduct.getProductName() + "' στο κατάστημα '" + storeName + "'");
-                    return;
+        String key = nameKey(storeName);
+        Store store = storesByName.get(key);
+        if (store != null) {
+            synchronized (store) {
+                Product old = productsByStore.get(key).put(nameKey(newProduct.getProductName()), newProduct);
+                if (old != null) {
+                    store.getProducts().remove(old);
+                    recordSales(store, old, -old.getSoldAmount());
                 }
+                store.getProducts().add(newProduct);
+                recordSales(store, newProduct, newProduct.getSoldAmount());
             }
+            System.out.println("Προστέθηκε νέο προϊόν '" + newProduct.getProductName() + "' στο κατάστημα '" + storeName + "'");
+            return true;
         }
 
         System.out.println("Δεν βρέθηκε κατάστημα για προσθήκη προϊόντος.");
+        return false;
     }
     // Αφαίρεση προϊόντος από κατάστημα
-    private static void handleRemoveProduct(Chunk chunk) {
+    private static boolean handleRemoveProduct(Chunk chunk) {
         Map<String, Object> data = (Map<String, Object>) chunk.getData();
         String storeName = (String) data.get("storeName");
         String productName = (String) data.get("productName");
 
-        synchronized (storeList) {
-            for (Store store : storeList) {
-                if (store.getStoreName().equalsIgnoreCase(storeName)) {
-                    boolean removed = store.getProducts().removeIf(p -> p.getProductName().equalsIgnoreCase(productName));
-                    if (removed) {
-                        System.out.println("Το προϊόν '" + productName + "' αφαιρέθηκε από το κατάστημα '" + storeName + "'");
-                    } else {
-                        System.out.println("Το προϊόν δεν βρέθηκε στο κατάστημα.");
-                    }
-                    return;
+        String key = nameKey(storeName);
+        Store store = storesByName.get(key);
+        if (store != null) {
+            Product removed;
+            synchronized (store) {
+                removed = productsByStore.get(key).remove(nameKey(productName));
+                if (removed != null) {
+                    store.getProducts().remove(removed);
+                    recordSales(store, removed, -removed.getSoldAmount());
                 }
             }
+            if (removed != null) {
+                System.out.println("Το προϊόν '" + productName + "' αφαιρέθηκε από το κατάστημα '" + storeName + "'");
+            } else {
+                System.out.println("Το προϊόν δεν βρέθηκε στο κατάστημα.");
+            }
+            return removed != null;
         }
 
         System.out.println("Δεν βρέθηκε κατάστημα για αφαίρεση προϊόντος.");
+        return false;
     }
     // Επιστροφή πωλήσεων ανα προϊόν
-    private static void handleSalesByProduct(Chunk chunk, Socket socket) {
-        Map<String, Integer> productSales = new HashMap<>();
-
-        synchronized (storeList) {
-            for (Store store : storeList) {
-                for (Product product : store.getProducts()) {
-                    // Αν έχει γίνει κάποια πώληση
-                    if (product.getSoldAmount() > 0) {
-                        productSales.put(product.getProductName(),
-                                productSales.getOrDefault(product.getProductName(), 0) + product.getSoldAmount());
-                    }
-                }
-            }
-        }
-
-        sendStatsToMaster(chunk.getSegmentID(), productSales);
-
+    private static void handleSalesByProduct(Chunk chunk) {
+        sendStatsToMaster(chunk, sales(5, downOf(chunk)));
     }
 
     // Επιστροφή πωλήσεων ανα τύπο καταστήματος (food category)
-    private static void handleSalesByStoreType(Chunk chunk, Socket socket) {
-        try (ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream())) {
-            Map<String, Integer> storeTypeSales = new HashMap<>();
-
-            synchronized (storeList) {
-                for (Store store : storeList) {
-                    int storeSales = 0;
-                    for (Product p : store.getProducts()) {
-                        storeSales += p.getSoldAmount();
-                    }
-                    if (storeSales > 0) {
-                        storeTypeSales.merge(store.getFoodCategory(), storeSales, Integer::sum);
-                    }
-                }
-            }
-
-            sendStatsToMaster(chunk.getSegmentID(), storeTypeSales);
-
-
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    private static void handleSalesByStoreType(Chunk chunk) {
+        sendStatsToMaster(chunk, sales(6, downOf(chunk)));
     }
 
     // Επιστροφή πωλήσεων ανα τύπο προϊόντος (product type)
-    private static void handleSalesByProductCategory(Chunk chunk, Socket socket) {
-        try (ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream())) {
-            Map<String, Integer> productCategorySales = new HashMap<>();
-
-            synchronized (storeList) {
-                for (Store store : storeList) {
-                    for (Product p : store.getProducts()) {
-                        int sold = p.getSoldAmount();
-                        if (p.getSoldAmount() > 0) {
-                            productCategorySales.merge(p.getProductType(), sold, Integer::sum);
-                        }
-                    }
-                }
-            }
-
-            sendStatsToMaster(chunk.getSegmentID(), productCategorySales);
-
+    private static void handleSalesByProductCategory(Chunk chunk) {
+        sendStatsToMaster(chunk, sales(7, downOf(chunk)));
+    }
 
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    // Πωλήσεις ανά προϊόν (5), τύπο καταστήματος (6) ή κατηγορία προϊόντος (7) για τα καταστήματα που εξυπηρετούμε
+    static Map<String, Integer> sales(int typeID, Set<String> down) {
+        return salesSnapshot(down, switch (typeID) {
+            case 6 -> t -> t.byStoreType;
+            case 7 -> t -> t.byProductCategory;
+            default -> t -> t.byProduct;
+        });
     }
 
-    // Εκτελεί αναζήτηση με βάση φίλτρα (γεωγραφική απόσταση, κατηγορία φαγητού, αστέρια, τιμή)
+    // Εκτελεί αναζήτηση με βάση φίλτρα (γεωγραφική απόσταση, κατηγορία φαγητού, αστέρια, τιμή).
+    // Επιστρέφει ταξινομημένα μόνο τα limit καλύτερα μετά το cursor (όλα αν δεν δόθηκε limit), ως
+    // StoreSummary με τα πεδία που ζητήθηκαν ή ολόκληρα Store αν ζητήθηκε includeProducts.
     private static void handleSearchRequest(Chunk chunk) {
         try {
-            Map<String, Object> filters = (Map<String, Object>) chunk.getData();
-            double clientLat = (double) filters.get("latitude");
-            double clientLon = (double) filters.get("longitude");
-            String foodCategory = (String) filters.get("foodCategory");
-            int minStars = (int) filters.get("stars");
-            String priceCategory = (String) filters.get("priceCategory");
-
-            List<Store> results = new ArrayList<>();
-
-            synchronized (storeList) {
-                for (Store store : storeList) {
-                    if (distance(clientLat, clientLon, store.getLatitude(), store.getLongitude()) <= 5) {
-                        if (!foodCategory.isEmpty() && !store.getFoodCategory().equalsIgnoreCase(foodCategory)) {
-                            continue;
-                        }
-                        if (store.getStars() < minStars) {
-                            continue;
-                        }
-                        if (!priceCategory.isEmpty() && !store.getPriceCategory().equals(priceCategory)) {
-                            continue;
-                        }
-                        results.add(store);
-                    }
-                }
-            }
-
             // Στέλνουμε τα αποτελέσματα πίσω στον Master
-            sendResultsToMaster(chunk.getSegmentID(), results);
+            sendResultsToMaster(chunk, 10, search((Map<String, Object>) chunk.getData(), downOf(chunk)));
 
         } catch (Exception e) {
             e.printStackTrace();
+            // Κενή απάντηση ώστε ο Master να μην περιμένει για πάντα
+            sendResultsToMaster(chunk, 10, new ArrayList<>());
         }
     }
 
+    static List<SearchOrder.Ranked> search(Map<String, Object> filters, Set<String> down) {
+        double clientLat = (double) filters.get("latitude");
+        double clientLon = (double) filters.get("longitude");
+        // Τα φίλτρα που άφησε κενά ο χρήστης δεν στέλνονται καθόλου
+        String foodCategory = (String) filters.getOrDefault("foodCategory", "");
+        int minStars = (int) filters.getOrDefault("stars", 0);
+        String priceCategory = (String) filters.getOrDefault("priceCategory", "");
+        SearchOrder order = new SearchOrder(filters);
+        SearchOrder.TopK results = order.new TopK((int) filters.getOrDefault("limit", Integer.MAX_VALUE));
+        int fields = (int) filters.getOrDefault("fields", StoreSummary.DEFAULT_FIELDS);
+        Function<Store, Object> projection = (boolean) filters.getOrDefault("includeProducts", false)
+                ? store -> store
+                : store -> StoreSummary.of(store, fields);
+
+        // Το ευρετήριο επιστρέφει μόνο όσα καταστήματα είναι μέσα στην ακτίνα
+        for (Store store : spatialIndex.withinRadius(clientLat, clientLon, SEARCH_RADIUS_KM)) {
+            if (!serves(storeHolders.getOrDefault(nameKey(store.getStoreName()), List.of()), down)) {
+                continue;
+            }
+            if (!foodCategory.isEmpty() && !store.getFoodCategory().equalsIgnoreCase(foodCategory)) {
+                continue;
+            }
+            if (store.getStars() < minStars) {
+                continue;
+            }
+            if (!priceCategory.isEmpty() && !store.getPriceCategory().equals(priceCategory)) {
+                continue;
+            }
+            results.offer(store);
+        }
+        return results.sorted(projection);
+    }
+
+    // Πλήρεις πληροφορίες (με τα προϊόντα) ενός καταστήματος με βάση το όνομα· null αν δεν το έχουμε
+    private static void handleStoreDetails(Chunk chunk) {
+        String storeName = (String) chunk.getData();
+        Store store = storeName == null ? null : storesByName.get(nameKey(storeName));
+        sendResultsToMaster(chunk, 16, store);
+    }
+
     // Εκτελεί αγορά προϊόντος, ενημερώνει απόθεμα και στατιστικά
-    private static void handleBuyRequest(Chunk chunk) {
+    private static boolean handleBuyRequest(Chunk chunk) {
         BuyRequest req = (BuyRequest) chunk.getData();
         String storeName = req.getStoreName();
         String productName = req.getProductName();
         int quantity = req.getQuantity();
 
-        synchronized (storeList) {
-            for (Store store : storeList) {
-                if (store.getStoreName().equalsIgnoreCase(storeName)) {
-                    for (Product p : store.getProducts()) {
-                        if (p.getProductName().equalsIgnoreCase(productName)) {
-                            synchronized (p) {
-                                int available = p.getAvailableAmount();
-                                if (available >= quantity) {
-                                    p.setAvailableAmount(available - quantity);
-                                    p.setSoldAmount(p.getSoldAmount() + quantity);
-                                    System.out.println("Αγορά: " + quantity + " x " + productName + " από " + storeName);
-                                    return;
-                                } else {
-                                    System.out.println("Μη διαθέσιμο απόθεμα για " + productName + " στο " + storeName);
-                                    return;
-                                }
-                            }
-                        }
-                    }
-                }
+        Store store = storesByName.get(nameKey(storeName));
+        Product p = findProduct(storeName, productName);
+        if (store != null && p != null) {
+            if (p.tryPurchase(quantity)) {
+                recordSales(store, p, quantity);
+                System.out.println("Αγορά: " + quantity + " x " + productName + " από " + storeName);
+                return true;
             }
+            // Μόνο οι επιτυχημένες αγορές προωθούνται στα αντίγραφα
+            System.out.println("Μη διαθέσιμο απόθεμα για " + productName + " στο " + storeName);
+            return false;
         }
 
         System.out.println("Κατάστημα ή προϊόν δεν βρέθηκαν για αγορά.");
+        return false;
     }
 
-    // Ενημερώνει τη βαθμολογία του καταστήματος με νέο review
+    // Καλάθι: εκτελείται όπως κάθε εγγραφή και, αφού γίνει durable, ο primary απαντά στον Master με το
+    // αποτέλεσμα κάθε γραμμής μέσω του reducer. Τα αντίγραφα δεν απαντούν.
+    private static void handleCheckout(Chunk chunk) {
+        long seq = handleWrite(chunk);
+        if (!"replica".equals(chunk.getUserID())) {
+            CartRequest cart = (CartRequest) chunk.getData();
+            whenDurable(chunk, seq, () -> sendResultsToMaster(chunk, 17, cart.getResults()));
+        }
+    }
 
-    private static void handleRating(Chunk chunk) {
-        Map<String, Object> data = (Map<String, Object>) chunk.getData();
-        String storeName = (String) data.get("storeName");
-        int rating = (int) data.get("rating");
+    // Εκτελεί ατομικά όλες τις γραμμές του καλαθιού: αν αποτύχει έστω μία, αναιρούνται όσες είχαν εκτελεστεί.
+    // Όλες οι εγγραφές του καταστήματος κρατούν το ίδιο lock (βλ. handleWrite), οπότε καμία αγορά δεν
+    // παρεμβάλλεται ανάμεσα στις γραμμές και την αναίρεσή τους.
+    private static boolean handleCartRequest(Chunk chunk) {
+        CartRequest cart = (CartRequest) chunk.getData();
+        String storeName = cart.getStoreName();
+        Store store = storesByName.get(nameKey(storeName));
+        if (store == null) {
+            System.out.println("Κατάστημα δεν βρέθηκε για καλάθι: " + storeName);
+            cart.setResults(null);
+            return false;
+        }
 
-        synchronized (storeList) {
-            for (Store store : storeList) {
-                if (store.getStoreName().equalsIgnoreCase(storeName)) {
-                    int oldStars = store.getStars();
-                    int oldVotes = store.getNoOfVotes();
-                    int newVotes = oldVotes + 1;
-                    int newStars = Math.round(((oldStars * oldVotes) + rating) / (float) newVotes);
-                    store.setStars(newStars);
-                    store.setNoOfVotes(newVotes);
-                    System.out.println("Νέα βαθμολογία για '" + storeName + "': " + newStars + " (" + newVotes + " ψήφοι)");
-                    return;
+        List<CartRequest.Line> lines = cart.getLines();
+        Product[] products = new Product[lines.size()];
+        int[] status = new int[lines.size()];
+        boolean ok = true;
+        // Ελέγχουμε όλες τις γραμμές (και μετά από αποτυχία) ώστε ο χρήστης να μάθει όλα τα προβλήματα μαζί
+        for (int i = 0; i < lines.size(); i++) {
+            CartRequest.Line line = lines.get(i);
+            products[i] = findProduct(storeName, line.productName());
+            if (line.quantity() <= 0) {
+                status[i] = CartRequest.INVALID_QUANTITY;
+            } else if (products[i] == null) {
+                status[i] = CartRequest.UNKNOWN_PRODUCT;
+            } else if (!products[i].tryPurchase(line.quantity())) {
+                status[i] = CartRequest.OUT_OF_STOCK;
+            }
+            ok &= status[i] == CartRequest.OK;
+        }
+
+        List<CartRequest.LineResult> results = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            CartRequest.Line line = lines.get(i);
+            Product p = products[i];
+            if (status[i] == CartRequest.OK) {
+                if (ok) {
+                    recordSales(store, p, line.quantity());
+                } else {
+                    p.cancelPurchase(line.quantity());
+                    status[i] = CartRequest.NOT_APPLIED;
                 }
             }
+            results.add(new CartRequest.LineResult(line.productName(), line.quantity(), status[i],
+                    p == null ? 0 : p.getAvailableAmount()));
         }
+        cart.setResults(results);
+        System.out.println((ok ? "Καλάθι: " : "Απορρίφθηκε καλάθι: ") + lines.size() + " προϊόντα από " + storeName);
+        // Μόνο τα καλάθια που εκτελέστηκαν προωθούνται στα αντίγραφα
+        return ok;
     }
 
+    // Η κατάσταση (διαθέσιμα/πωλημένα) των προϊόντων μιας αγοράς ή ενός καλαθιού που μόλις εκτελέστηκε (typeID 19)
+    private static Chunk productStateOf(Chunk chunk) {
+        String storeName = storeNameOf(chunk);
+        List<String> names = new ArrayList<>();
+        if (chunk.getData() instanceof BuyRequest req) {
+            names.add(req.getProductName());
+        } else {
+            for (CartRequest.Line line : ((CartRequest) chunk.getData()).getLines()) {
+                names.add(line.productName());
+            }
+        }
+        List<ProductState> products = new ArrayList<>();
+        for (String name : names) {
+            Product p = findProduct(storeName, name);
+            products.add(new ProductState(p.getProductName(), p.getAvailableAmount(), p.getSoldAmount()));
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("storeName", storeName);
+        data.put("products", products);
+        Chunk state = new Chunk(chunk.getUserID(), 19, data);
+        state.setSegmentID(chunk.getSegmentID());
+        state.setHolders(chunk.getHolders());
+        state.setDown(chunk.getDown());
+        state.setTrace(chunk.getTrace());
+        return state;
+    }
 
-    // Στέλνει αποτελέσματα αναζήτησης στον Master μέσω reducerPort
-    private static void sendResultsToMaster(int segmentId, List<Store> results) {
-        try {
-            Properties prop = new Properties();
-            prop.load(new FileInputStream("worker.config"));
-            String masterHost = prop.getProperty("masterHost");
-            int masterPort = Integer.parseInt(prop.getProperty("reducerPort"));
+    // Εφαρμόζει την κατάσταση προϊόντων που έστειλε ο primary (ή που γράφτηκε στο log)
+    private static boolean handleProductState(Chunk chunk) {
+        Map<String, Object> data = (Map<String, Object>) chunk.getData();
+        String storeName = (String) data.get("storeName");
+        Store store = storesByName.get(nameKey(storeName));
+        if (store == null) {
+            System.out.println("Κατάστημα δεν βρέθηκε για ενημέρωση αποθέματος: " + storeName);
+            return false;
+        }
+        for (ProductState state : (List<ProductState>) data.get("products")) {
+            Product p = findProduct(storeName, state.productName());
+            if (p == null) {
+                continue;
+            }
+            int sold = state.sold() - p.getSoldAmount();
+            p.setAvailableAmount(state.available());
+            p.setSoldAmount(state.sold());
+            recordSales(store, p, sold);
+        }
+        return true;
+    }
 
-            try (Socket socket = new Socket(masterHost, masterPort);
-                 ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream())) {
+    // Ενημερώνει τη βαθμολογία του καταστήματος με νέο review
 
-                Chunk response = new Chunk("worker", 10, results);
-                response.setSegmentID(segmentId);
+    private static boolean handleRating(Chunk chunk) {
+        Map<String, Object> data = (Map<String, Object>) chunk.getData();
+        String storeName = (String) data.get("storeName");
+        int rating = (int) data.get("rating");
 
-                out.writeObject(response);
-                out.flush();
-                System.out.println("Στάλθηκαν αποτελέσματα αναζήτησης στον Master (" + results.size() + " καταστήματα).");
+        Store store = storesByName.get(nameKey(storeName));
+        if (store != null) {
+            synchronized (store) {
+                int oldStars = store.getStars();
+                int oldVotes = store.getNoOfVotes();
+                int newVotes = oldVotes + 1;
+                int newStars = Math.round(((oldStars * oldVotes) + rating) / (float) newVotes);
+                store.setStars(newStars);
+                store.setNoOfVotes(newVotes);
+                System.out.println("Νέα βαθμολογία για '" + storeName + "': " + newStars + " (" + newVotes + " ψήφοι)");
             }
-
-        } catch (IOException e) {
-            e.printStackTrace();
+            return true;
         }
+        return false;
     }
 
-    private static void sendStatsToMaster(int segmentId, Map<String, Integer> results) {
-        try {
-            Properties prop = new Properties();
-            prop.load(new FileInputStream("worker.config"));
-            String masterHost = prop.getProperty("masterHost");
-            int masterPort = Integer.parseInt(prop.getProperty("reducerPort"));
+    // Προσθέτει (ή με αρνητικό amount αφαιρεί) πωλήσεις στα συγκεντρωτικά στατιστικά
+    private static void recordSales(Store store, Product p, int amount) {
+        if (amount == 0) {
+            return;
+        }
+        List<String> holders = storeHolders.getOrDefault(nameKey(store.getStoreName()), List.of());
+        recordSales(salesByHolders.computeIfAbsent(holders, h -> new SalesTotals()), store, p, amount);
+    }
 
-            try (Socket socket = new Socket(masterHost, masterPort);
-                 ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream())) {
+    private static void recordSales(SalesTotals totals, Store store, Product p, int amount) {
+        if (amount == 0) {
+            return;
+        }
+        addSales(totals.byProduct, p.getProductName(), amount);
+        addSales(totals.byStoreType, store.getFoodCategory(), amount);
+        addSales(totals.byProductCategory, p.getProductType(), amount);
+    }
 
-                Chunk response = new Chunk("worker", 5, results);
-                response.setSegmentID(segmentId);
+    private static void addSales(Map<String, Integer> sales, String key, int amount) {
+        sales.merge(key, amount, (a, b) -> a + b == 0 ? null : a + b); // null: το κλειδί αφαιρείται
+    }
 
-                out.writeObject(response);
-                out.flush();
-                System.out.println("Στάλθηκαν αποτελέσματα στατιστικών στον Master");
+    // Άθροισμα των συγκεντρωτικών πωλήσεων των καταστημάτων που εξυπηρετεί ο Worker, με μόνο τις θετικές τιμές
+    private static Map<String, Integer> salesSnapshot(Set<String> down, Function<SalesTotals, Map<String, Integer>> which) {
+        Map<String, Integer> snapshot = new HashMap<>();
+        for (Map.Entry<List<String>, SalesTotals> group : salesByHolders.entrySet()) {
+            if (!serves(group.getKey(), down)) {
+                continue;
+            }
+            for (Map.Entry<String, Integer> e : which.apply(group.getValue()).entrySet()) {
+                snapshot.merge(e.getKey(), e.getValue(), Integer::sum);
             }
+        }
+        snapshot.values().removeIf(v -> v <= 0);
+        return snapshot;
+    }
+
+    // Βρίσκει προϊόν καταστήματος μέσω των ευρετηρίων
+    private static Product findProduct(String storeName, String productName) {
+        Map<String, Product> products = productsByStore.get(nameKey(storeName));
+        return products == null ? null : products.get(nameKey(productName));
+    }
+
+    // Κανονικοποιημένο κλειδί ονόματος, με την ίδια σημασιολογία με το equalsIgnoreCase
+    static String nameKey(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            sb.append(Character.toLowerCase(Character.toUpperCase(name.charAt(i))));
+        }
+        return sb.toString();
+    }
 
+
+    // Στέλνει αποτελέσματα αναζήτησης/λεπτομέρειες στον Master μέσω reducerPort (με userID το host:port μας,
+    // ώστε ο Master να ξέρει ποιος απάντησε)
+    private static void sendResultsToMaster(Chunk request, int typeID, Object results) {
+        Chunk response = new Chunk(selfId, typeID, results);
+        response.setSegmentID(request.getSegmentID());
+        response.setTrace(request.getTrace());
+        long start = System.nanoTime();
+        try {
+            reducerConnection.send(response);
+            Tracer.span("worker.reply", request.getTrace(), start, System.nanoTime());
+            System.out.println("Στάλθηκαν αποτελέσματα (typeID " + typeID + ") στον Master.");
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    // Υπολογισμός απόστασης μεταξύ δύο σημείων με βάση γεωγραφικό πλάτος και μήκος
-    private static double distance(double lat1, double lon1, double lat2, double lon2) {
-        double theta = lon1 - lon2;
-        double dist = Math.sin(Math.toRadians(lat1)) * Math.sin(Math.toRadians(lat2))
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.cos(Math.toRadians(theta));
-        dist = Math.acos(dist);
-        dist = Math.toDegrees(dist);
-        dist = dist * 60 * 1.1515 * 1.609344; // miles to km
-        //System.out.println(dist);
-        return dist;
-
+    private static void sendStatsToMaster(Chunk request, Map<String, Integer> results) {
+        Chunk response = new Chunk(selfId, 5, results);
+        response.setSegmentID(request.getSegmentID());
+        response.setTrace(request.getTrace());
+        long start = System.nanoTime();
+        try {
+            reducerConnection.send(response);
+            Tracer.span("worker.reply", request.getTrace(), start, System.nanoTime());
+            System.out.println("Στάλθηκαν αποτελέσματα στατιστικών στον Master");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
 }
-
-
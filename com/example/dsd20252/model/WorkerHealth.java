@@ -0,0 +1,51 @@
+package com.example.dsd20252.model;
+
+/**
+ * Χρόνοι απόκρισης ενός Worker στις αναγνώσεις (αναζήτηση, στατιστικά), για προσαρμοστικό timeout.
+ * Όπως ο υπολογισμός RTO του TCP: κρατάμε εκθετικό κινητό μέσο (EWMA) του χρόνου απόκρισης και της
+ * απόκλισής του, και περιμένουμε srtt + 4 * rttvar. Κάθε timeout διπλασιάζει την αναμονή (backoff) μέχρι
+ * την επόμενη απάντηση, ώστε ένας Worker που απλώς έγινε πιο αργός να μη χάνεται σε κάθε αίτημα.
+ */
+class WorkerHealth {
+    private static final double ALPHA = 0.125;   // Βάρος νέου δείγματος στον μέσο όρο
+    private static final double BETA = 0.25;     // Βάρος νέου δείγματος στην απόκλιση
+    private static final int MAX_BACKOFF = 8;
+
+    private double srttMillis = -1;              // -1: δεν έχει απαντήσει ακόμη
+    private double rttvarMillis;
+    private int backoff = 1;
+    private long samples;
+    private long timeouts;
+
+    synchronized void sample(double millis) {
+        if (srttMillis < 0) {
+            srttMillis = millis;
+            rttvarMillis = millis / 2;
+        } else {
+            rttvarMillis = (1 - BETA) * rttvarMillis + BETA * Math.abs(srttMillis - millis);
+            srttMillis = (1 - ALPHA) * srttMillis + ALPHA * millis;
+        }
+        backoff = 1;
+        samples++;
+    }
+
+    synchronized void timedOut() {
+        backoff = Math.min(MAX_BACKOFF, backoff * 2);
+        timeouts++;
+    }
+
+    // Πόσο να περιμένουμε αυτόν τον Worker, μέσα στα όρια [minMillis, maxMillis]
+    synchronized long timeoutMillis(long minMillis, long maxMillis) {
+        if (srttMillis < 0) {
+            return maxMillis;   // Χωρίς μετρήσεις περιμένουμε όσο επιτρέπει το αίτημα
+        }
+        double rto = (srttMillis + 4 * rttvarMillis) * backoff;
+        return Math.max(minMillis, Math.min(maxMillis, (long) Math.ceil(rto)));
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("srtt=%.1fms rttvar=%.1fms backoff=%d samples=%d timeouts=%d",
+                Math.max(0, srttMillis), rttvarMillis, backoff, samples, timeouts);
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.dsd20252.model;
+
+// Εγγραφή που περιέχει πληροφορίες για έναν Worker (διεύθυνση, port και βάρος στο hash ring)
+record WorkerInfo(String host, int port, int weight) {
+    String id() {
+        return host + ":" + port;
+    }
+}
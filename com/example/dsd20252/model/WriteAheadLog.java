@@ -0,0 +1,381 @@
+package com.example.dsd20252.model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log του Worker: κάθε Chunk που άλλαξε την κατάσταση γράφεται στο δίσκο, ώστε μετά από
+ * επανεκκίνηση να ξαναεφαρμοστεί. Το log χωρίζεται σε segments (wal-N.log) και κάθε snapshot (snapshot-N.dat,
+ * βλ. SnapshotFile) περιέχει την κατάσταση στην αρχή του segment N, οπότε τα παλαιότερα αρχεία διαγράφονται.
+ *
+ * Group commit: οι εγγραφές μπαίνουν σε ουρά και ένα thread τις γράφει όλες μαζί με ένα write και (ανάλογα
+ * με την πολιτική) ένα fsync. Όσο γίνεται ένα fsync μαζεύονται οι επόμενες, οπότε ένα fsync καλύπτει πολλές αγορές.
+ * Πολιτικές fsync (walFsync):
+ *  - group: η εγγραφή θεωρείται durable μετά το fsync της· ο καλών περιμένει (awaitDurable) ή δίνει ενέργεια
+ *    που εκτελείται τότε (whenDurable), ώστε το thread του να συνεχίσει με άλλες εγγραφές
+ *  - interval: δεν περιμένει· fsync το πολύ κάθε walSyncMillis
+ *  - none: μόνο write, το fsync το αποφασίζει το λειτουργικό
+ *
+ * Μορφή segment: κεφαλίδα (MAGIC + έκδοση) και μετά εγγραφές [int crc32][int μήκος][frame του ChunkCodec].
+ * Μια μισογραμμένη ή χαλασμένη εγγραφή στο τέλος (crash στη μέση του write) σταματά την ανάγνωση εκεί.
+ */
+class WriteAheadLog {
+    private final Path dir;
+    private final String fsync;
+    private final long syncMillis;
+
+    // Προστατεύονται από το this
+    private List<ByteBuffer> pending = new ArrayList<>();
+    private long appendSeq;     // Τελευταία εγγραφή που μπήκε στην ουρά
+    private long writtenSeq;    // Τελευταία εγγραφή που γράφτηκε (και έγινε fsync, για την πολιτική group)
+    private boolean writing;    // Το thread εγγραφής χρησιμοποιεί το channel εκτός lock (write/fsync)
+    private FileChannel channel;
+    private long segment;
+    private long segmentStartSeq;   // appendSeq όταν άνοιξε το τρέχον segment
+    private boolean failed;
+    // Ενέργειες του whenDurable που περιμένουν το fsync της εγγραφής τους, κατά αύξοντα αριθμό
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(Comparator.comparingLong(Waiter::seq));
+
+    private record Waiter(long seq, Runnable action) {
+    }
+
+    WriteAheadLog(Path dir, String fsync, long syncMillis) {
+        this.dir = dir;
+        this.syncMillis = syncMillis;
+        if (!fsync.equals("group") && !fsync.equals("interval") && !fsync.equals("none")) {
+            System.err.println("Άγνωστο walFsync '" + fsync + "', χρησιμοποιείται group");
+            fsync = "group";
+        }
+        this.fsync = fsync;
+    }
+
+    // Το τελευταίο snapshot (null αν δεν υπάρχει). Φορτώνεται πριν από το replay.
+    Path latestSnapshot() throws IOException {
+        Files.createDirectories(dir);
+        long snapshot = latest("snapshot-", ".dat");
+        return snapshot >= 0 ? dir.resolve(snapshotName(snapshot)) : null;
+    }
+
+    /*
+     * Διαβάζει τα segments από το τελευταίο snapshot και μετά και δίνει κάθε Chunk στο apply, με τη σειρά
+     * που γράφτηκαν. Μετά ανοίγει νέο segment για τις επόμενες εγγραφές και ξεκινά το thread εγγραφής.
+     */
+    void replay(Consumer<Chunk> apply) throws IOException {
+        Files.createDirectories(dir);
+        long snapshot = latest("snapshot-", ".dat");
+        int records = 0;
+        long last = Math.max(snapshot, 0);
+        for (long s : segments()) {
+            if (s >= snapshot) {
+                records += readFile(dir.resolve(segmentName(s)), apply);
+                last = Math.max(last, s);
+            }
+        }
+        System.out.println("WAL: ανακτήθηκαν " + records + " εγγραφές από " + dir);
+
+        synchronized (this) {
+            segment = last + 1;
+            channel = openSegment(segment);
+        }
+        Thread writer = new Thread(this::writeLoop, "wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Βάζει την εγγραφή στην ουρά και επιστρέφει τον αύξοντα αριθμό της (για το awaitDurable)
+    long append(Chunk chunk) {
+        ByteBuffer record;
+        try {
+            record = encodeRecord(chunk);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 0;
+        }
+        synchronized (this) {
+            if (failed) {
+                return 0;
+            }
+            pending.add(record);
+            notifyAll();
+            return ++appendSeq;
+        }
+    }
+
+    // Με πολιτική group περιμένει μέχρι η εγγραφή seq να είναι στο δίσκο· στις άλλες επιστρέφει αμέσως
+    void awaitDurable(long seq) {
+        if (!fsync.equals("group")) {
+            return;
+        }
+        synchronized (this) {
+            while (writtenSeq < seq && !failed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /*
+     * Εκτελεί την ενέργεια όταν η εγγραφή seq είναι στο δίσκο (πολιτική group), από το thread εγγραφής μετά το
+     * fsync· αμέσως, από τον καλούντα, αν είναι ήδη, στις άλλες πολιτικές ή αν το WAL έχει αποτύχει.
+     * Οι ενέργειες πρέπει να είναι σύντομες (π.χ. αποστολή απάντησης), γιατί καθυστερούν το επόμενο fsync.
+     */
+    void whenDurable(long seq, Runnable action) {
+        if (fsync.equals("group")) {
+            synchronized (this) {
+                if (writtenSeq < seq && !failed) {
+                    waiters.add(new Waiter(seq, action));
+                    return;
+                }
+            }
+        }
+        action.run();
+    }
+
+    /*
+     * Κλείνει το τρέχον segment και ανοίγει το επόμενο. Καλείται ενώ δεν γίνονται αλλαγές (βλ. mutationGate του
+     * Worker), οπότε η κατάσταση εκείνη τη στιγμή είναι ακριβώς η αρχή του νέου segment. Περιμένει να τελειώσει
+     * και το thread εγγραφής με το παλιό channel (π.χ. το fsync της πολιτικής interval) πριν το κλείσει.
+     * Επιστρέφει τον αριθμό του νέου segment.
+     */
+    synchronized long rotate() throws IOException {
+        while ((writtenSeq < appendSeq || writing) && !failed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        channel.force(true);
+        channel.close();
+        segment++;
+        channel = openSegment(segment);
+        segmentStartSeq = appendSeq;
+        return segment;
+    }
+
+    // Αν γράφτηκε κάτι από το τελευταίο rotate (αλλιώς ένα νέο snapshot θα ήταν ίδιο με το προηγούμενο)
+    synchronized boolean hasNewRecords() {
+        return appendSeq > segmentStartSeq;
+    }
+
+    // Γράφει το snapshot του segment (πρώτα σε προσωρινό αρχείο, μετά atomic rename) και διαγράφει τα παλαιότερα αρχεία
+    void writeSnapshot(long forSegment, byte[] state) throws IOException {
+        Path tmp = dir.resolve(snapshotName(forSegment) + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(state);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        Files.move(tmp, dir.resolve(snapshotName(forSegment)), StandardCopyOption.ATOMIC_MOVE);
+
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                long n = numberOf(p.getFileName().toString());
+                if (n >= 0 && n < forSegment) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+        System.out.println("WAL: snapshot για το segment " + forSegment + " (" + state.length + " bytes)");
+    }
+
+    private void writeLoop() {
+        long lastSync = System.currentTimeMillis();
+        long syncedSeq = 0;     // Τελευταία εγγραφή που έγινε fsync
+        while (true) {
+            List<ByteBuffer> batch;
+            long seq;
+            FileChannel out;
+            synchronized (this) {
+                while (pending.isEmpty()) {
+                    try {
+                        wait(fsync.equals("interval") ? syncMillis : 0);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (pending.isEmpty() && fsync.equals("interval") && syncedSeq < writtenSeq) {
+                        break;  // Κανένα νέο στοιχείο, αλλά υπάρχουν εγγραφές χωρίς fsync
+                    }
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                seq = appendSeq;
+                out = channel;
+                writing = true;
+            }
+            try {
+                ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+                long remaining = 0;
+                for (ByteBuffer b : buffers) {
+                    remaining += b.remaining();
+                }
+                while (remaining > 0) {
+                    remaining -= out.write(buffers);
+                }
+                long now = System.currentTimeMillis();
+                if (fsync.equals("group") || (fsync.equals("interval") && now - lastSync >= syncMillis)) {
+                    out.force(false);
+                    lastSync = now;
+                    syncedSeq = seq;
+                }
+            } catch (IOException e) {
+                System.err.println("WAL: αποτυχία εγγραφής, οι αλλαγές δεν αποθηκεύονται πλέον στο δίσκο");
+                e.printStackTrace();
+                synchronized (this) {
+                    failed = true;
+                    notifyAll();
+                }
+                runWaiters(Long.MAX_VALUE);
+                return;
+            }
+            synchronized (this) {
+                writtenSeq = seq;
+                writing = false;
+                notifyAll();
+            }
+            runWaiters(seq);
+        }
+    }
+
+    // Εκτελεί (εκτός lock) τις ενέργειες των εγγραφών έως και upTo
+    private void runWaiters(long upTo) {
+        List<Runnable> ready = new ArrayList<>();
+        synchronized (this) {
+            while (!waiters.isEmpty() && waiters.peek().seq() <= upTo) {
+                ready.add(waiters.poll().action());
+            }
+        }
+        for (Runnable action : ready) {
+            try {
+                action.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Διαβάζει όλες τις έγκυρες εγγραφές ενός αρχείου· επιστρέφει πόσες ήταν
+    private static int readFile(Path file, Consumer<Chunk> apply) throws IOException {
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != ChunkCodec.MAGIC) {
+                throw new StreamCorruptedException("Άγνωστη μορφή αρχείου: " + file);
+            }
+            int version = ChunkCodec.negotiate(in.readUnsignedByte(), false);
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] body;
+                try {
+                    int expected = in.readInt();
+                    int length = in.readInt();
+                    if (length <= 0 || length > ChunkCodec.MAX_FRAME_SIZE) {
+                        throw new StreamCorruptedException("Μη έγκυρο μήκος εγγραφής: " + length);
+                    }
+                    body = new byte[length];
+                    in.readFully(body);
+                    crc.reset();
+                    crc.update(body);
+                    if ((int) crc.getValue() != expected) {
+                        throw new StreamCorruptedException("Λάθος checksum");
+                    }
+                } catch (EOFException e) {
+                    return count;   // Κανονικό τέλος ή μισογραμμένη τελευταία εγγραφή
+                } catch (StreamCorruptedException e) {
+                    System.err.println("WAL: " + file.getFileName() + ": " + e.getMessage() + ", αγνοείται το υπόλοιπο αρχείο");
+                    return count;
+                }
+                apply.accept(ChunkCodec.readChunk(ByteBuffer.wrap(body), version));
+                count++;
+            }
+        } catch (EOFException e) {
+            return count;   // Αρχείο χωρίς πλήρη κεφαλίδα
+        }
+    }
+
+    private static ByteBuffer encodeRecord(Chunk chunk) throws IOException {
+        ByteBuffer frame = ChunkCodec.encodeFrame(chunk, ChunkCodec.VERSION);
+        CRC32 crc = new CRC32();
+        crc.update(frame.duplicate().position(frame.position() + 4));
+        ByteBuffer record = ByteBuffer.allocate(4 + frame.remaining());
+        record.putInt((int) crc.getValue());
+        record.put(frame);
+        return record.flip();
+    }
+
+    private FileChannel openSegment(long n) throws IOException {
+        FileChannel out = FileChannel.open(dir.resolve(segmentName(n)), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ChunkCodec.encodeHeader();
+        while (header.hasRemaining()) {
+            out.write(header);
+        }
+        out.force(true);
+        return out;
+    }
+
+    private List<Long> segments() throws IOException {
+        List<Long> result = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                if (name.startsWith("wal-") && name.endsWith(".log")) {
+                    result.add(numberOf(name));
+                }
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    private long latest(String prefix, String suffix) throws IOException {
+        long max = -1;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                if (name.startsWith(prefix) && name.endsWith(suffix)) {
+                    max = Math.max(max, numberOf(name));
+                }
+            }
+        }
+        return max;
+    }
+
+    private static String segmentName(long n) {
+        return String.format("wal-%010d.log", n);
+    }
+
+    private static String snapshotName(long n) {
+        return String.format("snapshot-%010d.dat", n);
+    }
+
+    // Ο αριθμός segment από όνομα wal-N.log / snapshot-N.dat (-1 για άλλα αρχεία)
+    private static long numberOf(String name) {
+        int dash = name.indexOf('-');
+        int dot = name.indexOf('.');
+        if (dash < 0 || dot < dash) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(dash + 1, dot));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.dsd20252.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Σειριακή εκτέλεση των εγγραφών του Worker: κάθε κατάστημα αντιστοιχεί σε μία "λωρίδα" με δικό της
+ * thread, οπότε οι εγγραφές ενός καταστήματος εκτελούνται με τη σειρά που διαβάστηκαν από τη σύνδεση.
+ * Έτσι ο primary και τα αντίγραφα (που λαμβάνουν τις εγγραφές με τη σειρά που τις εφάρμοσε ο primary)
+ * εφαρμόζουν τις ίδιες εγγραφές με την ίδια σειρά. Εγγραφές διαφορετικών καταστημάτων εκτελούνται παράλληλα.
+ * Οι ουρές είναι φραγμένες: όταν γεμίσει μια λωρίδα, το thread της σύνδεσης περιμένει (backpressure).
+ */
+class WriteLanes {
+    private final List<BlockingQueue<Runnable>> queues = new ArrayList<>();
+
+    WriteLanes(String name, int lanes, int queueCapacity) {
+        for (int i = 0; i < Math.max(1, lanes); i++) {
+            BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueCapacity);
+            queues.add(queue);
+            Thread lane = new Thread(() -> runLane(queue), name + "-" + i);
+            lane.setDaemon(true);
+            lane.start();
+        }
+        Metrics.gauge("dsd_write_lane_queued", "", this::queued);
+    }
+
+    // Εκτελεί την εγγραφή στη λωρίδα του κλειδιού (κανονικοποιημένο όνομα καταστήματος)
+    void submit(String key, Runnable task) throws InterruptedException {
+        queues.get(Math.floorMod(key.hashCode(), queues.size())).put(task);
+    }
+
+    /*
+     * Εγγραφή που αφορά πολλά καταστήματα (μαζική εισαγωγή): εκτελείται αφού τελειώσουν όσες εγγραφές
+     * μπήκαν πριν από αυτήν σε κάθε λωρίδα και πριν από όσες μπουν μετά. Τα φράγματα μπαίνουν σε όλες
+     * τις λωρίδες με την ίδια σειρά (synchronized), ώστε δύο φράγματα να μην περιμένουν το ένα το άλλο.
+     */
+    synchronized void submitToAll(Runnable task) throws InterruptedException {
+        CountDownLatch arrived = new CountDownLatch(queues.size());
+        CountDownLatch done = new CountDownLatch(1);
+        for (int i = 0; i < queues.size(); i++) {
+            boolean runner = i == 0;
+            queues.get(i).put(() -> {
+                arrived.countDown();
+                try {
+                    if (runner) {
+                        arrived.await();
+                        try {
+                            task.run();
+                        } finally {
+                            done.countDown();
+                        }
+                    } else {
+                        done.await();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+    }
+
+    private long queued() {
+        long total = 0;
+        for (BlockingQueue<Runnable> queue : queues) {
+            total += queue.size();
+        }
+        return total;
+    }
+
+    private static void runLane(BlockingQueue<Runnable> queue) {
+        while (true) {
+            Runnable task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}